@@ -0,0 +1,84 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An ID allocator with an atomic counter. The IDs consist of an optional prefix 
+ * (which can be used as a namespace, for example to keep the IDs of different 
+ * storages apart) and the counter value.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomAtomicIdAllocator implements GedcomIdAllocator {
+	
+	/**
+	 * The process-wide allocator without prefix, used by default by all the 
+	 * storages. Structures which are created in different storages therefore 
+	 * never get the same ID, even if the storages are combined later.
+	 */
+	public static final GedcomAtomicIdAllocator SHARED = new GedcomAtomicIdAllocator();
+	
+	private final String prefix;
+	private final AtomicLong counter;
+	
+	/**
+	 * An allocator without prefix, starting at 0
+	 * 
+	 */
+	public GedcomAtomicIdAllocator() {
+		this("", 0);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param prefix The prefix of all IDs
+	 * @param start The number of the first ID
+	 */
+	public GedcomAtomicIdAllocator(String prefix, long start) {
+		this.prefix = (prefix == null ? "" : prefix);
+		this.counter = new AtomicLong(start);
+	}
+	
+	@Override
+	public String nextId() {
+		return prefix + counter.getAndIncrement();
+	}
+	
+	/**
+	 * Reserves a block of consecutive numbers
+	 * 
+	 * @param size
+	 * @return The first number of the block
+	 */
+	protected long reserve(int size) {
+		return counter.getAndAdd(size);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+}
@@ -0,0 +1,69 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+/**
+ * An ID allocator which reserves blocks of numbers for each thread. Only 
+ * reserving a new block has to access the shared counter, thus many threads 
+ * can allocate IDs without contention. The IDs of one thread are consecutive 
+ * within a block, but the IDs are not consecutive across threads.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomBlockIdAllocator extends GedcomAtomicIdAllocator {
+	
+	private final int blockSize;
+	
+	/** The next number and the end of the block (exclusive) of each thread */
+	private final ThreadLocal<long[]> blocks = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[] {0, 0};
+		}
+	};
+	
+	/**
+	 * 
+	 * 
+	 * @param prefix The prefix of all IDs
+	 * @param start The number of the first ID
+	 * @param blockSize The amount of numbers a thread reserves at once
+	 */
+	public GedcomBlockIdAllocator(String prefix, long start, int blockSize) {
+		super(prefix, start);
+		
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("The block size has to be at least 1");
+		}
+		
+		this.blockSize = blockSize;
+	}
+	
+	@Override
+	public String nextId() {
+		long[] block = blocks.get();
+		
+		if (block[0] == block[1]) {
+			block[0] = reserve(blockSize);
+			block[1] = block[0] + blockSize;
+		}
+		
+		return getPrefix() + (block[0]++);
+	}
+
+}
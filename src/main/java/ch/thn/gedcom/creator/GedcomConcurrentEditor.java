@@ -0,0 +1,341 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import ch.thn.gedcom.creator.GedcomCreatorService.StructureEditor;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Edits individuals and families from several threads. The records are 
+ * locked by their XRef, using a fixed number of lock stripes, so that threads 
+ * which edit different records rarely wait for each other. Operations which 
+ * change two records (like linking a spouse, which changes the HUSB/WIFE line 
+ * of the family and the FAMS line of the individual) hold the locks of both 
+ * records, thus other threads never see only one side of the link.<br />
+ * <br />
+ * The locks are only held while editing through this editor. Edits which 
+ * do not go through the same editor are not serialized.<br />
+ * <br />
+ * <b>Note:</b> The locks only protect the records themselves. State which is 
+ * shared between records is not protected, for example the structure listeners 
+ * which are notified on each change of a record: a 
+ * {@link ch.thn.gedcom.creator.index.PhoneticNameIndex} updates its maps when 
+ * any of its individuals is modified, thus edits of different individuals 
+ * would modify the index concurrently. Such listeners must not be registered 
+ * on records which are edited through this editor, unless they are thread 
+ * safe.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomConcurrentEditor {
+	
+	private final Striped<Lock> locks;
+	
+	/**
+	 * An editor with 1024 lock stripes
+	 */
+	public GedcomConcurrentEditor() {
+		this(1024);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param stripes The number of locks. More stripes means less contention 
+	 * between threads which edit different records.
+	 */
+	public GedcomConcurrentEditor(int stripes) {
+		locks = Striped.lock(stripes);
+	}
+	
+	/**
+	 * Sets the individual as husband or wife of the family and adds the 
+	 * spouse to family link to the individual, as one atomic operation. The 
+	 * family must not have another husband or wife yet, see 
+	 * {@link #replaceSpouse(GedcomFamily, GedcomIndividual, GedcomIndividual, boolean)}.
+	 * 
+	 * @param family
+	 * @param spouse
+	 * @param husband <code>true</code> to link the individual as husband, 
+	 * <code>false</code> to link it as wife
+	 * @return <code>true</code> if both sides are linked, <code>false</code> if 
+	 * the family already has another husband or wife or if a link could not 
+	 * be set
+	 */
+	public boolean linkSpouse(GedcomFamily family, GedcomIndividual spouse, boolean husband) {
+		return replaceSpouse(family, null, spouse, husband);
+	}
+	
+	/**
+	 * Replaces the husband or wife of the family with the given individual, as 
+	 * one atomic operation: the HUSB/WIFE line of the family is set, the spouse 
+	 * to family link is added to the new spouse and removed from the previous 
+	 * spouse, while holding the locks of all three records. If the individual 
+	 * can not be linked, the previous husband or wife link of the family is 
+	 * restored.
+	 * 
+	 * @param family
+	 * @param previousSpouse The current husband or wife of the family, or 
+	 * <code>null</code> if the family has none
+	 * @param spouse
+	 * @param husband <code>true</code> to link the individual as husband, 
+	 * <code>false</code> to link it as wife
+	 * @return <code>true</code> if both sides are linked, <code>false</code> if 
+	 * the previous spouse is not the current husband or wife of the family or if 
+	 * a link could not be set
+	 */
+	public boolean replaceSpouse(GedcomFamily family, GedcomIndividual previousSpouse, 
+			GedcomIndividual spouse, boolean husband) {
+		String familyId = family.getId();
+		String spouseId = spouse.getId();
+		String previousId = (previousSpouse == null ? null : previousSpouse.getId());
+		
+		List<Lock> held = (previousId == null 
+				? lock(familyKey(familyId), individualKey(spouseId)) 
+				: lock(familyKey(familyId), individualKey(spouseId), individualKey(previousId)));
+		
+		try {
+			String current = (husband ? family.getHusbandLink() : family.getWifeLink());
+			
+			if (spouseId.equals(current)) {
+				//Only the FAMS line might be missing
+				return spouse.indexOfSpouseFamilyLink(familyId) >= 0 
+						|| spouse.addSpouseFamilyLink(familyId);
+			}
+			
+			if (current == null ? previousId != null : !current.equals(previousId)) {
+				//Another individual is linked
+				return false;
+			}
+			
+			boolean set = (husband ? family.setHusbandLink(spouseId) : family.setWifeLink(spouseId));
+			
+			if (!set) {
+				return false;
+			}
+			
+			if (spouse.indexOfSpouseFamilyLink(familyId) < 0 && !spouse.addSpouseFamilyLink(familyId)) {
+				//Undo the family side
+				if (current == null) {
+					if (husband) {
+						family.removeHusbandLink();
+					} else {
+						family.removeWifeLink();
+					}
+				} else {
+					if (husband) {
+						family.setHusbandLink(current);
+					} else {
+						family.setWifeLink(current);
+					}
+				}
+				
+				return false;
+			}
+			
+			if (previousSpouse != null) {
+				previousSpouse.removeSpouseFamilyLink(familyId);
+			}
+			
+			return true;
+		} finally {
+			unlock(held);
+		}
+	}
+	
+	/**
+	 * Removes the HUSB or WIFE line which links to the individual from the 
+	 * family and the spouse to family link from the individual, as one atomic 
+	 * operation
+	 * 
+	 * @param family
+	 * @param spouse
+	 * @return <code>true</code> if any of the two links has been removed
+	 */
+	public boolean unlinkSpouse(GedcomFamily family, GedcomIndividual spouse) {
+		String familyId = family.getId();
+		String spouseId = spouse.getId();
+		
+		List<Lock> held = lock(familyKey(familyId), individualKey(spouseId));
+		
+		try {
+			boolean removed = false;
+			
+			if (spouseId.equals(family.getHusbandLink())) {
+				removed = family.removeHusbandLink();
+			} else if (spouseId.equals(family.getWifeLink())) {
+				removed = family.removeWifeLink();
+			}
+			
+			//Not short-circuit, both sides have to be removed
+			removed |= spouse.removeSpouseFamilyLink(familyId);
+			
+			return removed;
+		} finally {
+			unlock(held);
+		}
+	}
+	
+	/**
+	 * Adds the child to the family and the child to family link to the 
+	 * individual, as one atomic operation. Links which already exist are not 
+	 * added again.
+	 * 
+	 * @param family
+	 * @param child
+	 * @return <code>true</code> if both sides are linked
+	 */
+	public boolean linkChild(GedcomFamily family, GedcomIndividual child) {
+		String familyId = family.getId();
+		String childId = child.getId();
+		
+		List<Lock> held = lock(familyKey(familyId), individualKey(childId));
+		
+		try {
+			boolean addedToFamily = false;
+			
+			if (family.indexOfChildLink(childId) < 0) {
+				if (!family.addChildLink(childId)) {
+					return false;
+				}
+				
+				addedToFamily = true;
+			}
+			
+			if (child.indexOfChildFamilyLink(familyId) >= 0) {
+				return true;
+			}
+			
+			if (child.addChildFamilyLink(familyId)) {
+				return true;
+			}
+			
+			if (addedToFamily) {
+				family.removeChildLink(childId);
+			}
+			
+			return false;
+		} finally {
+			unlock(held);
+		}
+	}
+	
+	/**
+	 * Applies the editor to the individual while holding its lock
+	 * 
+	 * @param individual
+	 * @param editor
+	 * @return The result of the editor
+	 * @throws Exception Any exception thrown by the editor
+	 */
+	public <R> R editIndividual(GedcomIndividual individual, 
+			StructureEditor<? super GedcomIndividual, R> editor) throws Exception {
+		List<Lock> held = lock(individualKey(individual.getId()));
+		
+		try {
+			return editor.edit(individual);
+		} finally {
+			unlock(held);
+		}
+	}
+	
+	/**
+	 * Applies the editor to the family while holding its lock
+	 * 
+	 * @param family
+	 * @param editor
+	 * @return The result of the editor
+	 * @throws Exception Any exception thrown by the editor
+	 */
+	public <R> R editFamily(GedcomFamily family, 
+			StructureEditor<? super GedcomFamily, R> editor) throws Exception {
+		List<Lock> held = lock(familyKey(family.getId()));
+		
+		try {
+			return editor.edit(family);
+		} finally {
+			unlock(held);
+		}
+	}
+	
+	/**
+	 * Locks the stripes of all the given keys. The locks are always taken in 
+	 * the same order (see {@link Striped#bulkGet(Iterable)}), thus two threads 
+	 * which lock the same keys can not deadlock.
+	 * 
+	 * @param keys
+	 * @return The locks which have been taken, in the order they have been taken
+	 */
+	private List<Lock> lock(String... keys) {
+		List<Lock> held = new ArrayList<>(keys.length);
+		
+		Lock previous = null;
+		for (Lock lock : locks.bulkGet(Arrays.asList(keys))) {
+			//Two keys can be on the same stripe
+			if (lock != previous) {
+				lock.lock();
+				held.add(lock);
+			}
+			
+			previous = lock;
+		}
+		
+		return held;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param held
+	 */
+	private static void unlock(List<Lock> held) {
+		for (int i = held.size() - 1; i >= 0; i--) {
+			held.get(i).unlock();
+		}
+	}
+	
+	/**
+	 * Individuals and families can have the same XRef, thus the keys include 
+	 * the record type
+	 * 
+	 * @param individualId
+	 * @return
+	 */
+	private static String individualKey(String individualId) {
+		return "INDI " + individualId;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param familyId
+	 * @return
+	 */
+	private static String familyKey(String familyId) {
+		return "FAM " + familyId;
+	}
+
+}
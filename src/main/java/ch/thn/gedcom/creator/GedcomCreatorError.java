@@ -33,4 +33,14 @@ public class GedcomCreatorError extends Error {
 		super(message);
 	}
 	
+	/**
+	 * 
+	 * 
+	 * @param message
+	 * @param cause
+	 */
+	public GedcomCreatorError(String message, Throwable cause) {
+		super(message, cause);
+	}
+	
 }
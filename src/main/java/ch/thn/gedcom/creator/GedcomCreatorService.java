@@ -0,0 +1,210 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomStore;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Creates and edits individuals and families on an executor, so that many 
+ * small edit requests can be processed concurrently. The executor is given 
+ * by the caller: any executor can be used, for example one which starts a 
+ * new (virtual) thread per task.<br />
+ * <br />
+ * Creating a structure takes a new tree from the {@link GedcomStoreContext}, 
+ * which is guarded by a lock. Edits of the same structure are serialized by a lock per 
+ * structure (striped), edits of different structures run in parallel. 
+ * Only {@link Lock}s are used (no synchronized blocks), so that waiting 
+ * threads do not block the carrier threads of virtual threads.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomCreatorService {
+	
+	private final GedcomStoreContext store;
+	private final ExecutorService executor;
+	
+	private final ReentrantLock storeLock = new ReentrantLock();
+	private final Striped<Lock> structureLocks = Striped.lock(256);
+	
+	/**
+	 * 
+	 * 
+	 * @param store
+	 * @param executor The executor which runs the create and edit requests
+	 */
+	public GedcomCreatorService(GedcomStore store, ExecutorService executor) {
+		this(new GedcomStoreContext(store), executor);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param store
+	 * @param executor The executor which runs the create and edit requests
+	 */
+	public GedcomCreatorService(GedcomStoreContext store, ExecutorService executor) {
+		this.store = store;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Creates a new individual and applies the editor to it
+	 * 
+	 * @param id
+	 * @param editor Can be <code>null</code>
+	 * @return
+	 */
+	public Future<GedcomIndividual> createIndividual(final String id, 
+			final StructureEditor<? super GedcomIndividual, ?> editor) {
+		return executor.submit(new Callable<GedcomIndividual>() {
+			@Override
+			public GedcomIndividual call() throws Exception {
+				GedcomIndividual individual = newIndividual(id);
+				
+				if (editor != null) {
+					editor.edit(individual);
+				}
+				
+				return individual;
+			}
+		});
+	}
+	
+	/**
+	 * Creates a new family and applies the editor to it
+	 * 
+	 * @param id
+	 * @param editor Can be <code>null</code>
+	 * @return
+	 */
+	public Future<GedcomFamily> createFamily(final String id, 
+			final StructureEditor<? super GedcomFamily, ?> editor) {
+		return executor.submit(new Callable<GedcomFamily>() {
+			@Override
+			public GedcomFamily call() throws Exception {
+				GedcomFamily family = newFamily(id);
+				
+				if (editor != null) {
+					editor.edit(family);
+				}
+				
+				return family;
+			}
+		});
+	}
+	
+	/**
+	 * Applies the editor to an existing structure. Other edits of the same 
+	 * structure through this service wait until the editor has finished.
+	 * 
+	 * @param structure
+	 * @param editor
+	 * @return The result of the editor
+	 */
+	public <S extends AbstractGedcomStructure, R> Future<R> edit(final S structure, 
+			final StructureEditor<? super S, R> editor) {
+		return executor.submit(new Callable<R>() {
+			@Override
+			public R call() throws Exception {
+				Lock lock = structureLocks.get(structure);
+				lock.lock();
+				
+				try {
+					return editor.edit(structure);
+				} finally {
+					lock.unlock();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param id
+	 * @return
+	 */
+	protected GedcomIndividual newIndividual(String id) {
+		storeLock.lock();
+		
+		try {
+			return new GedcomIndividual(store, id);
+		} finally {
+			storeLock.unlock();
+		}
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param id
+	 * @return
+	 */
+	protected GedcomFamily newFamily(String id) {
+		storeLock.lock();
+		
+		try {
+			return new GedcomFamily(store, id);
+		} finally {
+			storeLock.unlock();
+		}
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+	
+	
+	/*************************************************************************
+	 * Creates or edits a structure within a request of the service
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 * @param <S> The type of the structure
+	 * @param <R> The type of the result
+	 */
+	public interface StructureEditor<S extends AbstractGedcomStructure, R> {
+		
+		/**
+		 * 
+		 * 
+		 * @param structure
+		 * @return
+		 * @throws Exception
+		 */
+		public R edit(S structure) throws Exception;
+	}
+
+}
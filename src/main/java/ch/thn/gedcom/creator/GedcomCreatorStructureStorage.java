@@ -17,18 +17,31 @@
 package ch.thn.gedcom.creator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import ch.thn.gedcom.creator.GedcomRelationListener.Phase;
+import ch.thn.gedcom.creator.analysis.MissingReference;
+import ch.thn.gedcom.creator.index.GedcomIndividualIndex;
+import ch.thn.gedcom.creator.metrics.GedcomMetrics;
+import ch.thn.gedcom.creator.metrics.GedcomMetrics.Operation;
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
 import ch.thn.gedcom.creator.structures.GedcomEOF;
 import ch.thn.gedcom.creator.structures.GedcomFamily;
 import ch.thn.gedcom.creator.structures.GedcomHeader;
 import ch.thn.gedcom.creator.structures.GedcomIndividual;
 import ch.thn.gedcom.creator.structures.GedcomSubmitter;
+import ch.thn.gedcom.creator.structures.GedcomXRefMapper;
 import ch.thn.gedcom.data.GedcomNode;
 
 import com.google.common.collect.HashMultimap;
@@ -37,6 +50,9 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * This class can be used to collect all the gedcom creator structures and it provides 
  * the functionality to create family connections between all individuals and families 
@@ -53,6 +69,8 @@ import com.google.common.collect.Sets.SetView;
  */
 public class GedcomCreatorStructureStorage {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(GedcomCreatorStructureStorage.class);
+	
 	private TreeMap<String, GedcomEOF> eofs = null;
 	private TreeMap<String, GedcomHeader> headers = null;
 	private TreeMap<String, GedcomSubmitter> submitters = null;
@@ -61,6 +79,8 @@ public class GedcomCreatorStructureStorage {
 	
 	/** All the parents and their families. Is updated each time a family is added and through {@link #buildFamilyRelations()} */
 	private HashMultimap<String, GedcomFamily> familiesOfParent = null;
+	/** Set if families have been added or changed in bulk, see {@link #ensureFamiliesOfParent()} */
+	private boolean familiesOfParentOutdated = false;
 	/** All the children and the families where they are part of. Only available after a call to {@link #buildFamilyRelations()} */
 	private HashMultimap<String, GedcomFamily> familiesOfChild = null;
 	
@@ -74,9 +94,34 @@ public class GedcomCreatorStructureStorage {
 	/** Any families which are linked but do not exist. Only available after a call to {@link #buildFamilyRelations()} */
 	private ArrayList<String> missingFamilies = null;
 	
+	/** Secondary indexes over the individuals. Updated each time an individual is added or removed */
+	private ArrayList<GedcomIndividualIndex> individualIndexes = null;
+	
+	/** Creates the IDs of the structures which do not have an ID */
+	private GedcomIdAllocator idAllocator = null;
+	
+	private GedcomMetrics metrics = GedcomMetrics.NOOP;
+	
+	/** Notified about the progress of building the relations and the cleanup */
+	private ArrayList<GedcomRelationListener> relationListeners = null;
+	private int progressInterval = 1000;
+	
+	/** The last published snapshot. Volatile, so that readers always get the latest snapshot */
+	private volatile GedcomStorageSnapshot snapshot = GedcomStorageSnapshot.EMPTY;
+	
 	private boolean structuresModified = true;
 	private boolean throwExceptionOnMissingStructures = false;
 	
+	/** Checks the links of each added family and individual, see {@link #setCheckReferencesOnInsert(boolean)} */
+	private boolean checkReferencesOnInsert = false;
+	/** The links to individuals which do not exist (yet), by the ID of the linked individual */
+	private HashMultimap<String, MissingReference> pendingIndividualReferences = null;
+	/** The links to families which do not exist (yet), by the ID of the linked family */
+	private HashMultimap<String, MissingReference> pendingFamilyReferences = null;
+	/** Set if records have been removed or links have been changed after the 
+	 * pending references have been checked */
+	private boolean pendingReferencesOutdated = false;
+	
 	/**
 	 * 
 	 */
@@ -93,9 +138,71 @@ public class GedcomCreatorStructureStorage {
 		partnersOfIndividual = HashMultimap.create();
 		childrenOfIndividual = HashMultimap.create();
 		
+		pendingIndividualReferences = HashMultimap.create();
+		pendingFamilyReferences = HashMultimap.create();
+		
 		missingIndividuals = new ArrayList<>();
 		missingFamilies = new ArrayList<>();
 		
+		individualIndexes = new ArrayList<>();
+		
+		idAllocator = GedcomAtomicIdAllocator.SHARED;
+		
+		relationListeners = new ArrayList<>();
+		
+	}
+	
+	/**
+	 * Sets the allocator which creates the IDs of the structures which do not 
+	 * have an ID of their own, see {@link #generateId()}. The default allocator 
+	 * is the process-wide {@link GedcomAtomicIdAllocator#SHARED}, so that the 
+	 * generated IDs of different storages do not collide when they are combined 
+	 * with {@link #addAll(GedcomCreatorStructureStorage)}. A storage with its own 
+	 * allocator has to use a distinct prefix for that.
+	 * 
+	 * @param idAllocator
+	 */
+	public void setIdAllocator(GedcomIdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public GedcomIdAllocator getIdAllocator() {
+		return idAllocator;
+	}
+	
+	/**
+	 * Sets the metrics which record the operations of this storage (adding 
+	 * and removing structures, building the family relations and the cleanup). 
+	 * The operations of the structures themselves are recorded through 
+	 * {@link AbstractGedcomStructure#setMetrics(GedcomMetrics)}.
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(GedcomMetrics metrics) {
+		this.metrics = (metrics == null ? GedcomMetrics.NOOP : metrics);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public GedcomMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Creates a new ID with the ID allocator of this storage
+	 * 
+	 * @return
+	 */
+	public String generateId() {
+		return idAllocator.nextId();
 	}
 	
 	/**
@@ -122,6 +229,8 @@ public class GedcomCreatorStructureStorage {
 	 */
 	public void add(GedcomCreatorStructureStorage structureStorage, 
 			boolean eof, boolean header, boolean submitter, boolean family, boolean individual) {
+		long start = metrics.start();
+		
 		if (eof) {
 			eofs.putAll(structureStorage.getModifiableEOFs());
 		}
@@ -136,15 +245,358 @@ public class GedcomCreatorStructureStorage {
 		
 		if (family) {
 			families.putAll(structureStorage.getModifiableFamilies());
+			//Replaced families might still be listed
+			familiesOfParentOutdated = true;
 		}
 		
 		if (individual) {
-			individuals.putAll(structureStorage.getModifiableIndividuals());
+			if (individualIndexes.isEmpty()) {
+				individuals.putAll(structureStorage.getModifiableIndividuals());
+			} else {
+				for (Map.Entry<String, GedcomIndividual> entry : structureStorage.getModifiableIndividuals().entrySet()) {
+					unindexIndividual(individuals.put(entry.getKey(), entry.getValue()));
+					indexIndividual(entry.getValue());
+				}
+			}
+		}
+		
+		if (checkReferencesOnInsert) {
+			if (individual) {
+				for (Map.Entry<String, GedcomIndividual> entry : structureStorage.getModifiableIndividuals().entrySet()) {
+					checkReferences(entry.getKey(), entry.getValue());
+				}
+			}
+			
+			if (family) {
+				for (Map.Entry<String, GedcomFamily> entry : structureStorage.getModifiableFamilies().entrySet()) {
+					checkReferences(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		
+		structuresModified = true;
+		metrics.stop(Operation.STORAGE_ADD, start);
+	}
+	
+	/**
+	 * Merges all the structures of the given structure storage into this 
+	 * structure storage, with the compact ID scheme for the structures which 
+	 * have to be renamed. See {@link #merge(GedcomCreatorStructureStorage, GedcomIdScheme)}.
+	 * 
+	 * @param structureStorage
+	 * @return The IDs of the merged structures which have been changed
+	 * @throws GedcomCreatorError If a header, submitter or EOF of the given 
+	 * storage has the same ID as one of this storage
+	 */
+	public GedcomXRefRemapping merge(GedcomCreatorStructureStorage structureStorage) {
+		return merge(structureStorage, GedcomIdScheme.COMPACT);
+	}
+	
+	/**
+	 * Merges the families and individuals of the given structure storage into 
+	 * this structure storage. Other than {@link #addAll(GedcomCreatorStructureStorage)}, 
+	 * structures with an ID which already exists in this storage do not overwrite 
+	 * the existing structures. They get a new ID from the given ID scheme instead 
+	 * (an ID which is not used by any structure or XRef of the two storages, so 
+	 * that a link to a missing record does not turn into a link to the renamed 
+	 * structure), and all the XRefs in 
+	 * the merged structures which point to a renamed structure (HUSB, WIFE, CHIL, 
+	 * FAMS, FAMC, ...) are rewritten. The rewriting is done with a single pass 
+	 * over each merged structure, in parallel.<br />
+	 * <br />
+	 * The headers, submitters and EOFs are moved with their IDs. They are not 
+	 * renamed, since the links to them are not rewritten. If one of them has 
+	 * the same ID as a header, submitter or EOF of this storage, nothing is 
+	 * merged.<br />
+	 * <br />
+	 * The structures of the given storage are moved into this storage and the 
+	 * given storage is cleared, since its keys do not match the rewritten 
+	 * structures anymore. The structures of this storage are not changed.
+	 * 
+	 * @param structureStorage
+	 * @param idScheme The scheme which creates the new IDs
+	 * @return The IDs of the merged structures which have been changed
+	 * @throws GedcomCreatorError If a header, submitter or EOF of the given 
+	 * storage has the same ID as one of this storage. Both storages are 
+	 * unchanged then.
+	 */
+	public GedcomXRefRemapping merge(GedcomCreatorStructureStorage structureStorage, 
+			GedcomIdScheme idScheme) {
+		long start = metrics.start();
+		
+		TreeMap<String, GedcomFamily> mergedFamilies = structureStorage.getModifiableFamilies();
+		TreeMap<String, GedcomIndividual> mergedIndividuals = structureStorage.getModifiableIndividuals();
+		
+		//Checked before anything is changed
+		checkMergedIds(eofs, structureStorage.getModifiableEOFs(), "EOF");
+		checkMergedIds(headers, structureStorage.getModifiableHeaders(), "header");
+		checkMergedIds(submitters, structureStorage.getModifiableSubmitters(), "submitter");
+		
+		GedcomXRefRemapping remapping = new GedcomXRefRemapping();
+		
+		//--- Collisions
+		List<String> individualCollisions = new ArrayList<>();
+		for (String id : mergedIndividuals.keySet()) {
+			if (individuals.containsKey(id)) {
+				individualCollisions.add(id);
+			}
+		}
+		
+		List<String> familyCollisions = new ArrayList<>();
+		for (String id : mergedFamilies.keySet()) {
+			if (families.containsKey(id)) {
+				familyCollisions.add(id);
+			}
+		}
+		
+		if (!individualCollisions.isEmpty() || !familyCollisions.isEmpty()) {
+			Set<String> reserved = getReservedIds();
+			reserved.addAll(structureStorage.getReservedIds());
+			
+			Set<String> issued = new HashSet<>();
+			String[] newIndividualIds = createIds(idScheme, true, individualCollisions.size(), reserved, issued);
+			String[] newFamilyIds = createIds(idScheme, false, familyCollisions.size(), reserved, issued);
+			
+			for (int i = 0; i < newIndividualIds.length; i++) {
+				remapping.putIndividual(individualCollisions.get(i), newIndividualIds[i]);
+			}
+			
+			for (int i = 0; i < newFamilyIds.length; i++) {
+				remapping.putFamily(familyCollisions.get(i), newFamilyIds[i]);
+			}
+		}
+		
+		//--- Rewrite the XRefs
+		if (!remapping.isEmpty()) {
+			AbstractGedcomStructure[] structures = structureStorage.getRecordArray();
+			ForkJoinPool.commonPool().invoke(new RemapTask(structures, remapping, 0, structures.length));
+		}
+		
+		//--- Move the structures
+		eofs.putAll(structureStorage.getModifiableEOFs());
+		headers.putAll(structureStorage.getModifiableHeaders());
+		submitters.putAll(structureStorage.getModifiableSubmitters());
+		
+		for (Map.Entry<String, GedcomIndividual> entry : mergedIndividuals.entrySet()) {
+			individuals.put(remapping.getIndividualId(entry.getKey()), entry.getValue());
+			indexIndividual(entry.getValue());
+		}
+		
+		for (Map.Entry<String, GedcomFamily> entry : mergedFamilies.entrySet()) {
+			GedcomFamily family = entry.getValue();
+			families.put(remapping.getFamilyId(entry.getKey()), family);
+			//The XRefs have been rewritten already
+			addFamilyForParents(familiesOfParent, family.getHusbandLink(), family.getWifeLink(), family);
+		}
+		
+		if (checkReferencesOnInsert) {
+			for (Map.Entry<String, GedcomIndividual> entry : mergedIndividuals.entrySet()) {
+				checkReferences(remapping.getIndividualId(entry.getKey()), entry.getValue());
+			}
+			
+			for (Map.Entry<String, GedcomFamily> entry : mergedFamilies.entrySet()) {
+				checkReferences(remapping.getFamilyId(entry.getKey()), entry.getValue());
+			}
+		}
+		
+		structureStorage.clearAll();
+		
+		structuresModified = true;
+		
+		metrics.stop(Operation.STORAGE_ADD, start);
+		
+		return remapping;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param existing The structures of this storage
+	 * @param merged The structures of the merged storage
+	 * @param structureName
+	 * @throws GedcomCreatorError If a merged structure has the ID of an 
+	 * existing structure
+	 */
+	private static void checkMergedIds(Map<String, ?> existing, Map<String, ?> merged, 
+			String structureName) {
+		for (String id : merged.keySet()) {
+			if (existing.containsKey(id)) {
+				throw new GedcomCreatorError("The " + structureName + " " + id + 
+						" can not be merged, since there is already a " + structureName + 
+						" with the same ID");
+			}
+		}
+	}
+	
+	/**
+	 * Assigns new IDs to all individuals and families, in the order of their 
+	 * current IDs. All the XRefs are rewritten with a single pass over each 
+	 * structure, in parallel. The old and new IDs are kept in sorted arrays, 
+	 * thus looking up the new ID of an XRef is a binary search without any 
+	 * additional objects per structure.<br />
+	 * <br />
+	 * XRefs to individuals or families which are not in this storage are not 
+	 * changed. Their values (and the IDs of the headers, submitters and EOFs) are 
+	 * skipped when the new IDs are created, so that a link to a missing record 
+	 * does not turn into a link to an unrelated record. The numbers of the new 
+	 * IDs therefore can have gaps.
+	 * 
+	 * @param idScheme
+	 * @throws GedcomCreatorError If the ID scheme does not create unique IDs
+	 */
+	public void renumber(GedcomIdScheme idScheme) {
+		//The keys of a tree map are sorted, which is needed for the binary search
+		String[] oldIndividualIds = individuals.keySet().toArray(new String[individuals.size()]);
+		String[] oldFamilyIds = families.keySet().toArray(new String[families.size()]);
+		
+		AbstractGedcomStructure[] structures = getRecordArray();
+		
+		Set<String> reserved = getReservedIds(structures);
+		//The current IDs are replaced and can be used again
+		reserved.removeAll(individuals.keySet());
+		reserved.removeAll(families.keySet());
+		
+		Set<String> issued = new HashSet<>();
+		String[] newIndividualIds = createIds(idScheme, true, oldIndividualIds.length, reserved, issued);
+		String[] newFamilyIds = createIds(idScheme, false, oldFamilyIds.length, reserved, issued);
+		
+		ForkJoinPool.commonPool().invoke(new RemapTask(structures, 
+				new SortedXRefMapper(oldIndividualIds, newIndividualIds, oldFamilyIds, newFamilyIds), 
+				0, structures.length));
+		
+		//--- Replace the keys
+		GedcomIndividual[] individualValues = individuals.values().toArray(
+				new GedcomIndividual[individuals.size()]);
+		individuals.clear();
+		for (int i = 0; i < individualValues.length; i++) {
+			individuals.put(newIndividualIds[i], individualValues[i]);
+		}
+		
+		GedcomFamily[] familyValues = families.values().toArray(
+				new GedcomFamily[families.size()]);
+		families.clear();
+		for (int i = 0; i < familyValues.length; i++) {
+			families.put(newFamilyIds[i], familyValues[i]);
+		}
+		
+		if (checkReferencesOnInsert) {
+			//The pending references still have the old IDs
+			checkAllReferences();
 		}
 		
+		//The parents are listed by their old IDs
+		familiesOfParentOutdated = true;
 		structuresModified = true;
 	}
 	
+	/**
+	 * Creates the given number of IDs with the ID scheme, skipping the reserved 
+	 * IDs
+	 * 
+	 * @param idScheme
+	 * @param individual <code>true</code> for individual IDs, <code>false</code> 
+	 * for family IDs
+	 * @param count
+	 * @param reserved The IDs which must not be used
+	 * @param issued The IDs which have been created already. The created IDs 
+	 * are added.
+	 * @return
+	 * @throws GedcomCreatorError If the ID scheme does not create unique IDs
+	 */
+	private static String[] createIds(GedcomIdScheme idScheme, boolean individual, int count, 
+			Set<String> reserved, Set<String> issued) {
+		String[] ids = new String[count];
+		int number = 0;
+		
+		for (int i = 0; i < count; i++) {
+			String id = null;
+			
+			do {
+				//A scheme with unique IDs skips at most all the reserved IDs
+				if (number > count + reserved.size()) {
+					throw new GedcomCreatorError("The ID scheme does not create enough unique " + 
+							(individual ? "individual" : "family") + " IDs");
+				}
+				
+				id = (individual ? idScheme.getIndividualId(++number) : idScheme.getFamilyId(++number));
+			} while (reserved.contains(id));
+			
+			if (!issued.add(id)) {
+				throw new GedcomCreatorError("The ID scheme created the " + 
+						(individual ? "individual" : "family") + " ID " + id + " more than once");
+			}
+			
+			ids[i] = id;
+		}
+		
+		return ids;
+	}
+	
+	/**
+	 * Returns all the IDs which are used in this storage: the IDs of all the 
+	 * structures and all the XRefs of the individuals and families which do not 
+	 * point to an individual or family of this storage.
+	 * 
+	 * @return
+	 */
+	private Set<String> getReservedIds() {
+		return getReservedIds(getRecordArray());
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param records All the individuals and families of this storage
+	 * @return
+	 */
+	private Set<String> getReservedIds(AbstractGedcomStructure[] records) {
+		final Set<String> reserved = ConcurrentHashMap.newKeySet();
+		
+		GedcomXRefMapper collector = new GedcomXRefMapper() {
+			
+			@Override
+			public String map(String tag, String xref) {
+				if (!(GedcomXRefRemapping.isIndividualXRef(tag) && individuals.containsKey(xref)) 
+						&& !(GedcomXRefRemapping.isFamilyXRef(tag) && families.containsKey(xref))) {
+					reserved.add(xref);
+				}
+				
+				//Nothing is changed
+				return null;
+			}
+		};
+		
+		ForkJoinPool.commonPool().invoke(new RemapTask(records, collector, 0, records.length));
+		
+		reserved.addAll(individuals.keySet());
+		reserved.addAll(families.keySet());
+		reserved.addAll(eofs.keySet());
+		reserved.addAll(headers.keySet());
+		reserved.addAll(submitters.keySet());
+		
+		return reserved;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return All the individuals and families of this storage, individuals first
+	 */
+	private AbstractGedcomStructure[] getRecordArray() {
+		AbstractGedcomStructure[] records = new AbstractGedcomStructure[
+				individuals.size() + families.size()];
+		int i = 0;
+		for (GedcomIndividual individual : individuals.values()) {
+			records[i++] = individual;
+		}
+		
+		for (GedcomFamily family : families.values()) {
+			records[i++] = family;
+		}
+		
+		return records;
+	}
+	
 	/**
 	 * 
 	 * 
@@ -242,8 +694,10 @@ public class GedcomCreatorStructureStorage {
 	 * @param eof
 	 */
 	public boolean addEOF(String eofId, GedcomEOF eof) {
+		long start = metrics.start();
 		structuresModified = true;
 		putIfNotNull(eofs, eofId, eof);
+		metrics.stop(Operation.STORAGE_ADD, start);
 		return true;
 	}
 	
@@ -254,8 +708,10 @@ public class GedcomCreatorStructureStorage {
 	 * @param header
 	 */
 	public boolean addHeader(String headerId, GedcomHeader header) {
+		long start = metrics.start();
 		structuresModified = true;
 		putIfNotNull(headers, headerId, header);
+		metrics.stop(Operation.STORAGE_ADD, start);
 		return true;
 	}
 	
@@ -271,13 +727,19 @@ public class GedcomCreatorStructureStorage {
 	 * @return <code>false</code> if a submitter with the given ID already exists.
 	 */
 	public boolean addSubmitter(String submitterId, GedcomSubmitter submitter) {
-		if (submitterId != null && submitters.containsKey(submitterId)) {
-			return false;
-		}
+		long start = metrics.start();
 		
-		structuresModified = true;
-		putIfNotNull(submitters, submitterId, submitter);
-		return true;
+		try {
+			if (submitterId != null && submitters.containsKey(submitterId)) {
+				return false;
+			}
+			
+			structuresModified = true;
+			putIfNotNull(submitters, submitterId, submitter);
+			return true;
+		} finally {
+			metrics.stop(Operation.STORAGE_ADD, start);
+		}
 	}
 	
 	/**
@@ -304,38 +766,94 @@ public class GedcomCreatorStructureStorage {
 	 * if there is already a family with the same husband and wife.
 	 */
 	public boolean addFamily(String familyId, GedcomFamily family) {
-		if (familyId != null && families.containsKey(familyId)) {
-			return false;
+		return addFamily(familyId, family, true);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param familyId See {@link #addFamily(String, GedcomFamily)}
+	 * @param family
+	 * @param checkParents If <code>false</code>, the family is also added if it 
+	 * has no parents or if there is already a family with the same husband and 
+	 * wife (for example to copy the families of another storage as they are). 
+	 * Such a family is not listed in the families of its parents, like with 
+	 * {@link #buildFamilyRelations()}.
+	 * @return <code>false</code> if a family with the given ID already exists, 
+	 * or if the parents are checked and the family has no parents or there is 
+	 * already a family with the same husband and wife.
+	 */
+	public boolean addFamily(String familyId, GedcomFamily family, boolean checkParents) {
+		long start = metrics.start();
+		
+		try {
+			if (familyId != null && families.containsKey(familyId)) {
+				return false;
+			}
+			
+			String husbLink = family.getHusbandLink();
+			String wifeLink = family.getWifeLink();
+			
+			ensureFamiliesOfParent();
+			
+			if (!addFamilyForParents(familiesOfParent, husbLink, wifeLink, family) && checkParents) {
+				return false;
+			}
+			
+			structuresModified = true;
+			
+			if (putIfNotNull(families, familyId, family) && checkReferencesOnInsert) {
+				checkReferences(familyId, family);
+			}
+			
+			return true;
+		} finally {
+			metrics.stop(Operation.STORAGE_ADD, start);
+		}
+	}
+	
+	/**
+	 * Lists the families by their parents again if families have been added 
+	 * or changed in bulk (with {@link #add(GedcomCreatorStructureStorage, boolean, boolean, boolean, boolean, boolean)}, 
+	 * {@link #renumber(GedcomIdScheme)}, {@link #clearFamilyRelations()} or 
+	 * {@link #invalidateFamilyRelations()}), so that adding a family and 
+	 * linking a spouse check the current parents. Only the families of the 
+	 * parents are listed, the other relations are built with 
+	 * {@link #buildFamilyRelations()}.
+	 * 
+	 */
+	private void ensureFamiliesOfParent() {
+		if (!familiesOfParentOutdated) {
+			return;
 		}
 		
-		String husbLink = family.getHusbandLink();
-		String wifeLink = family.getWifeLink();
+		HashMultimap<String, GedcomFamily> listedFamiliesOfParent = HashMultimap.create();
 		
-		if (!addFamilyForParents(husbLink, wifeLink, family)) {
-			return false;
+		for (GedcomFamily family : families.values()) {
+			addFamilyForParents(listedFamiliesOfParent, family.getHusbandLink(), family.getWifeLink(), family);
 		}
 		
-		structuresModified = true;
-		putIfNotNull(families, familyId, family);
-		
-		return true;
+		familiesOfParent = listedFamiliesOfParent;
+		familiesOfParentOutdated = false;
 	}
 	
 	/**
 	 * 
 	 * 
+	 * @param familiesOfParent The families of the parents to add the family to
 	 * @param husbId
 	 * @param wifeId
 	 * @param family
 	 * @return
 	 */
-	private boolean addFamilyForParents(String husbId, String wifeId, GedcomFamily family) {
+	private static boolean addFamilyForParents(HashMultimap<String, GedcomFamily> familiesOfParent, 
+			String husbId, String wifeId, GedcomFamily family) {
 		if (husbId == null && wifeId == null) {
 			return false;
 		}
 		
 		if (familiesOfParent.containsKey(husbId) && familiesOfParent.containsKey(wifeId)) {
-			if (getFamilyOfParents(husbId, wifeId) != null) {
+			if (findFamilyOfParents(familiesOfParent, husbId, wifeId) != null) {
 				//They have a family already
 				return false;
 			}
@@ -373,14 +891,27 @@ public class GedcomCreatorStructureStorage {
 	 * @return <code>false</code> if an individual with the given ID already exists.
 	 */
 	public boolean addIndividual(String individualId, GedcomIndividual individual) {
-		if (individualId != null && individuals.containsKey(individualId)) {
-			return false;
-		}
-		
-		structuresModified = true;
-		putIfNotNull(individuals, individualId, individual);
+		long start = metrics.start();
 		
-		return true;
+		try {
+			if (individualId != null && individuals.containsKey(individualId)) {
+				return false;
+			}
+			
+			structuresModified = true;
+			
+			if (putIfNotNull(individuals, individualId, individual)) {
+				indexIndividual(individual);
+				
+				if (checkReferencesOnInsert) {
+					checkReferences(individualId, individual);
+				}
+			}
+			
+			return true;
+		} finally {
+			metrics.stop(Operation.STORAGE_ADD, start);
+		}
 	}
 	
 	/**
@@ -569,8 +1100,14 @@ public class GedcomCreatorStructureStorage {
 	 * @return
 	 */
 	public GedcomEOF removeEOF(String eofId) {
-		structuresModified = true;
-		return eofs.remove(eofId);
+		long start = metrics.start();
+		
+		try {
+			structuresModified = true;
+			return eofs.remove(eofId);
+		} finally {
+			metrics.stop(Operation.STORAGE_REMOVE, start);
+		}
 	}
 	
 	/**
@@ -580,8 +1117,14 @@ public class GedcomCreatorStructureStorage {
 	 * @return
 	 */
 	public GedcomHeader removeHeader(String headerId) {
-		structuresModified = true;
-		return headers.remove(headerId);
+		long start = metrics.start();
+		
+		try {
+			structuresModified = true;
+			return headers.remove(headerId);
+		} finally {
+			metrics.stop(Operation.STORAGE_REMOVE, start);
+		}
 	}
 	
 	/**
@@ -591,8 +1134,14 @@ public class GedcomCreatorStructureStorage {
 	 * @return
 	 */
 	public GedcomSubmitter removeSubmitter(String submitterId) {
-		structuresModified = true;
-		return submitters.remove(submitterId);
+		long start = metrics.start();
+		
+		try {
+			structuresModified = true;
+			return submitters.remove(submitterId);
+		} finally {
+			metrics.stop(Operation.STORAGE_REMOVE, start);
+		}
 	}
 	
 	/**
@@ -602,16 +1151,28 @@ public class GedcomCreatorStructureStorage {
 	 * @return
 	 */
 	public GedcomFamily removeFamily(String familyId) {
-		structuresModified = true;
-		GedcomFamily removed = families.remove(familyId);
+		long start = metrics.start();
 		
-		if (removed != null) {
-			//Clean up all families
-			while (familiesOfParent.values().remove(removed)) {}
-			while (familiesOfChild.values().remove(removed)) {}
+		try {
+			structuresModified = true;
+			GedcomFamily removed = families.remove(familyId);
+			
+			if (removed != null) {
+				//Clean up all families
+				while (familiesOfParent.values().remove(removed)) {}
+				while (familiesOfChild.values().remove(removed)) {}
+				
+				if (checkReferencesOnInsert) {
+					uncheckReferences(familyId, removed);
+					//The links to the removed family are missing now
+					pendingReferencesOutdated = true;
+				}
+			}
+			
+			return removed;
+		} finally {
+			metrics.stop(Operation.STORAGE_REMOVE, start);
 		}
-		
-		return removed;
 	}
 	
 	/**
@@ -631,16 +1192,30 @@ public class GedcomCreatorStructureStorage {
 	 * @return
 	 */
 	public GedcomIndividual removeIndividual(String individualId) {
-		structuresModified = true;
-		GedcomIndividual removed = individuals.remove(individualId);
+		long start = metrics.start();
 		
-		if (removed != null) {
-			//Clean up all individuals
-			while (partnersOfIndividual.values().remove(removed)) {}
-			while (childrenOfIndividual.values().remove(removed)) {}
+		try {
+			structuresModified = true;
+			GedcomIndividual removed = individuals.remove(individualId);
+			
+			if (removed != null) {
+				//Clean up all individuals
+				while (partnersOfIndividual.values().remove(removed)) {}
+				while (childrenOfIndividual.values().remove(removed)) {}
+				
+				unindexIndividual(removed);
+				
+				if (checkReferencesOnInsert) {
+					uncheckReferences(individualId, removed);
+					//The links to the removed individual are missing now
+					pendingReferencesOutdated = true;
+				}
+			}
+			
+			return removed;
+		} finally {
+			metrics.stop(Operation.STORAGE_REMOVE, start);
 		}
-		
-		return removed;
 	}
 	
 	/**
@@ -654,25 +1229,90 @@ public class GedcomCreatorStructureStorage {
 	}
 	
 	/**
-	 * Returns an unmodifiable view on the EOF map
+	 * Adds a secondary index over the individuals. All the individuals which 
+	 * are already in this storage are added to the index, and the index is kept 
+	 * up to date when individuals are added or removed.<br />
+	 * <br />
+	 * <b>Note:</b> Modifications of an individual which is already in the storage 
+	 * are not detected. Call {@link #reindexIndividual(GedcomIndividual)} after 
+	 * modifying an indexed value (like a name or a date).
 	 * 
-	 * @return
+	 * @param index
 	 */
-	public Map<String, GedcomEOF> getEOFs() {
-		return Collections.unmodifiableMap(eofs);
+	public void addIndex(GedcomIndividualIndex index) {
+		individualIndexes.add(index);
+		index.addAll(individuals.values());
 	}
 	
 	/**
-	 * Returns an unmodifiable view on the HEADER map
+	 * Removes the index from this storage. The index is not cleared and 
+	 * is not updated anymore.
 	 * 
+	 * @param index
 	 * @return
 	 */
-	public Map<String, GedcomHeader> getHeaders() {
-		return Collections.unmodifiableMap(headers);
+	public boolean removeIndex(GedcomIndividualIndex index) {
+		return individualIndexes.remove(index);
 	}
 	
 	/**
-	 * Returns an unmodifiable view on the SUBMITTER map
+	 * Updates the entries of the given individual in all the indexes of this storage.
+	 * 
+	 * @param individual
+	 */
+	public void reindexIndividual(GedcomIndividual individual) {
+		//Look up by ID first to avoid searching all the individuals
+		if (individuals.get(individual.getId()) == individual || individuals.containsValue(individual)) {
+			indexIndividual(individual);
+		}
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param individual
+	 */
+	private void indexIndividual(GedcomIndividual individual) {
+		for (GedcomIndividualIndex index : individualIndexes) {
+			index.add(individual);
+		}
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param individual
+	 */
+	private void unindexIndividual(GedcomIndividual individual) {
+		if (individual == null) {
+			return;
+		}
+		
+		for (GedcomIndividualIndex index : individualIndexes) {
+			index.remove(individual);
+		}
+	}
+	
+	/**
+	 * Returns an unmodifiable view on the EOF map
+	 * 
+	 * @return
+	 */
+	public Map<String, GedcomEOF> getEOFs() {
+		return Collections.unmodifiableMap(eofs);
+	}
+	
+	/**
+	 * Returns an unmodifiable view on the HEADER map
+	 * 
+	 * @return
+	 */
+	public Map<String, GedcomHeader> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * Returns an unmodifiable view on the SUBMITTER map
 	 * 
 	 * @return
 	 */
@@ -708,11 +1348,11 @@ public class GedcomCreatorStructureStorage {
 	 * after adding/removing structures is very inefficient.
 	 * 
 	 * @param individualId
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public Set<GedcomFamily> getFamiliesOfParent(String individualId) {
-		if (structuresModified) {
-			buildFamilyRelations();
-		}
+		ensureFamilyRelations();
 		
 		return familiesOfParent.get(individualId);
 	}
@@ -728,6 +1368,8 @@ public class GedcomCreatorStructureStorage {
 	 * 
 	 * @param individual
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public Set<GedcomFamily> getFamiliesOfParent(GedcomIndividual individual) {
 		return getFamiliesOfParent(individual.getId());
@@ -743,11 +1385,11 @@ public class GedcomCreatorStructureStorage {
 	 * after adding/removing structures is very inefficient.
 	 * 
 	 * @param individualId
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public Set<GedcomIndividual> getChildrenOfIndividual(String individualId) {
-		if (structuresModified) {
-			buildFamilyRelations();
-		}
+		ensureFamilyRelations();
 		
 		return childrenOfIndividual.get(individualId);
 	}
@@ -763,6 +1405,8 @@ public class GedcomCreatorStructureStorage {
 	 * 
 	 * @param individual
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public Set<GedcomIndividual> getChildrenOfIndividual(GedcomIndividual individual) {
 		return getChildrenOfIndividual(individual.getId());
@@ -778,11 +1422,11 @@ public class GedcomCreatorStructureStorage {
 	 * after adding/removing structures is very inefficient.
 	 * 
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public List<String> getMissingFamilies() {
-		if (structuresModified) {
-			buildFamilyRelations();
-		}
+		ensureFamilyRelations();
 		
 		return missingFamilies;
 	}
@@ -797,11 +1441,11 @@ public class GedcomCreatorStructureStorage {
 	 * after adding/removing structures is very inefficient.
 	 * 
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public List<String> getMissingIndividuals() {
-		if (structuresModified) {
-			buildFamilyRelations();
-		}
+		ensureFamilyRelations();
 		
 		return missingIndividuals;
 	}
@@ -816,11 +1460,11 @@ public class GedcomCreatorStructureStorage {
 	 * after adding/removing structures is very inefficient.
 	 * 
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public boolean hasMissingStructures() {
-		if (structuresModified) {
-			buildFamilyRelations();
-		}
+		ensureFamilyRelations();
 		
 		return missingIndividuals.size() > 0 || missingFamilies.size() > 0;
 	}
@@ -837,18 +1481,31 @@ public class GedcomCreatorStructureStorage {
 	 * @param parent1Id
 	 * @param parent2Id
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public GedcomFamily getFamilyOfParents(String parent1Id, String parent2Id) {
-		if (structuresModified) {
-			buildFamilyRelations();
-		}
+		ensureFamilyRelations();
 		
 		if (parent1Id == null && parent2Id == null) {
 			return null;
 		}
 		
-		Set<GedcomFamily> families1 = getFamiliesOfParent(parent1Id);
-		Set<GedcomFamily> families2 = getFamiliesOfParent(parent2Id);
+		return findFamilyOfParents(familiesOfParent, parent1Id, parent2Id);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param familiesOfParent
+	 * @param parent1Id
+	 * @param parent2Id
+	 * @return
+	 */
+	private static GedcomFamily findFamilyOfParents(HashMultimap<String, GedcomFamily> familiesOfParent, 
+			String parent1Id, String parent2Id) {
+		Set<GedcomFamily> families1 = familiesOfParent.get(parent1Id);
+		Set<GedcomFamily> families2 = familiesOfParent.get(parent2Id);
 		
 		//A comment in the guava docs: 
 		//"I can use intersection as a Set directly, but copying it can be more 
@@ -876,6 +1533,8 @@ public class GedcomCreatorStructureStorage {
 	 * @param parent1
 	 * @param parent2
 	 * @return
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
 	 */
 	public GedcomFamily getFamilyOfParents(GedcomIndividual parent1, GedcomIndividual parent2) {
 		if (parent1 == null || parent2 == null) {
@@ -951,6 +1610,13 @@ public class GedcomCreatorStructureStorage {
 		families.clear();
 		individuals.clear();
 		
+		for (GedcomIndividualIndex index : individualIndexes) {
+			index.clear();
+		}
+		
+		pendingIndividualReferences.clear();
+		pendingFamilyReferences.clear();
+		
 		clearFamilyRelations();
 	}
 	
@@ -960,6 +1626,18 @@ public class GedcomCreatorStructureStorage {
 	 */
 	public void clearFamilyRelations() {
 		familiesOfParent.clear();
+		//Listed again with the next family which is added
+		familiesOfParentOutdated = true;
+		
+		clearBuiltRelations();
+	}
+	
+	/**
+	 * Clears the relations which are only available after a call to 
+	 * {@link #buildFamilyRelations()}
+	 * 
+	 */
+	private void clearBuiltRelations() {
 		familiesOfChild.clear();
 		
 		partnersOfIndividual.clear();
@@ -969,6 +1647,382 @@ public class GedcomCreatorStructureStorage {
 		missingIndividuals.clear();
 	}
 	
+	/**
+	 * Builds the family relations if any structures have been added or removed 
+	 * after the last build
+	 * 
+	 * @throws CancellationException If building the relations has been 
+	 * cancelled by a {@link GedcomRelationListener}
+	 */
+	private void ensureFamilyRelations() {
+		if (structuresModified && !buildFamilyRelations()) {
+			throw new CancellationException("Building the family relations has been cancelled");
+		}
+	}
+	
+	/**
+	 * Builds the family relations if needed and publishes an immutable copy 
+	 * of the individuals, families and relations. The collections of the 
+	 * snapshot can be read by other threads while this storage is modified 
+	 * further, and the previous snapshots stay valid. The records themselves 
+	 * are not copied, see {@link GedcomStorageSnapshot}.<br />
+	 * <br />
+	 * Creating a snapshot copies the collections, thus it should be called once 
+	 * after a batch of modifications and not after each modification.
+	 * 
+	 * @return The published snapshot, or the previous snapshot if building the 
+	 * relations has been cancelled
+	 */
+	public GedcomStorageSnapshot publishSnapshot() {
+		if (structuresModified && !buildFamilyRelations()) {
+			return snapshot;
+		}
+		
+		snapshot = GedcomStorageSnapshot.copyOf(snapshot.getVersion() + 1, 
+				individuals, families, 
+				familiesOfParent, familiesOfChild, 
+				partnersOfIndividual, childrenOfIndividual, 
+				missingIndividuals, missingFamilies);
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Returns the last snapshot which has been published with {@link #publishSnapshot()}. 
+	 * Can be called from any thread and never blocks.
+	 * 
+	 * @return The last snapshot, or {@link GedcomStorageSnapshot#EMPTY} if no 
+	 * snapshot has been published yet
+	 */
+	public GedcomStorageSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	/**
+	 * Links the individual as child of the family. The CHIL line is added to 
+	 * the family and the FAMC line to the individual (if they do not exist yet), 
+	 * and the family relations are updated without rebuilding them.
+	 * 
+	 * @param familyId
+	 * @param childId
+	 * @return <code>false</code> if the family or the individual is not in 
+	 * this storage, or if a link could not be added
+	 */
+	public boolean linkChild(String familyId, String childId) {
+		GedcomFamily family = getFamily(familyId);
+		GedcomIndividual child = getIndividual(childId);
+		
+		if (family == null || child == null) {
+			return false;
+		}
+		
+		boolean addedToFamily = false;
+		
+		if (family.indexOfChildLink(childId) < 0) {
+			if (!family.addChildLink(childId)) {
+				return false;
+			}
+			
+			addedToFamily = true;
+		}
+		
+		if (child.indexOfChildFamilyLink(familyId) < 0 && !child.addChildFamilyLink(familyId)) {
+			if (addedToFamily) {
+				family.removeChildLink(childId);
+			}
+			
+			return false;
+		}
+		
+		if (!structuresModified) {
+			familiesOfChild.put(childId, family);
+			putIfNotNull(childrenOfIndividual, family.getHusbandLink(), child);
+			putIfNotNull(childrenOfIndividual, family.getWifeLink(), child);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Removes the CHIL line from the family and the FAMC line from the 
+	 * individual, and updates the family relations without rebuilding them.
+	 * 
+	 * @param familyId
+	 * @param childId
+	 * @return <code>true</code> if any of the two links has been removed
+	 */
+	public boolean unlinkChild(String familyId, String childId) {
+		GedcomFamily family = getFamily(familyId);
+		GedcomIndividual child = getIndividual(childId);
+		
+		if (family == null || child == null) {
+			return false;
+		}
+		
+		boolean removed = family.removeChildLink(childId);
+		//Not short-circuit, both sides have to be removed
+		removed |= child.removeChildFamilyLink(familyId);
+		
+		pendingReferencesOutdated |= removed;
+		
+		if (removed && !structuresModified) {
+			familiesOfChild.remove(childId, family);
+			unrelateChild(family.getHusbandLink(), childId);
+			unrelateChild(family.getWifeLink(), childId);
+		}
+		
+		return removed;
+	}
+	
+	/**
+	 * Links the individual as husband or wife of the family. The HUSB/WIFE 
+	 * line of the family is set and the FAMS line is added to the individual 
+	 * (if it does not exist yet). A previous husband or wife is unlinked 
+	 * from the family once the new spouse is linked, see 
+	 * {@link #unlinkSpouse(String, String)}. If a link can not be set, the 
+	 * links which have already been set are removed again and the previous 
+	 * spouse stays linked. The family relations are updated without rebuilding 
+	 * them.
+	 * 
+	 * @param familyId
+	 * @param spouseId
+	 * @param husband <code>true</code> to link the individual as husband, 
+	 * <code>false</code> to link it as wife
+	 * @return <code>false</code> if the family or the individual is not in 
+	 * this storage, if the individual already is the other spouse of the family, 
+	 * if the two spouses already have another family together, or if a link 
+	 * could not be set
+	 */
+	public boolean linkSpouse(String familyId, String spouseId, boolean husband) {
+		GedcomFamily family = getFamily(familyId);
+		GedcomIndividual spouse = getIndividual(spouseId);
+		
+		if (family == null || spouse == null) {
+			return false;
+		}
+		
+		ensureFamiliesOfParent();
+		
+		String previous = (husband ? family.getHusbandLink() : family.getWifeLink());
+		
+		if (spouseId.equals(previous)) {
+			//Only the FAMS line might be missing
+			return spouse.indexOfSpouseFamilyLink(familyId) >= 0 
+					|| spouse.addSpouseFamilyLink(familyId);
+		}
+		
+		String other = (husband ? family.getWifeLink() : family.getHusbandLink());
+		
+		if (spouseId.equals(other) || sharesFamily(spouseId, other)) {
+			return false;
+		}
+		
+		boolean addedToSpouse = false;
+		
+		if (spouse.indexOfSpouseFamilyLink(familyId) < 0) {
+			if (!spouse.addSpouseFamilyLink(familyId)) {
+				return false;
+			}
+			
+			addedToSpouse = true;
+		}
+		
+		if (!(husband ? family.setHusbandLink(spouseId) : family.setWifeLink(spouseId))) {
+			if (addedToSpouse) {
+				spouse.removeSpouseFamilyLink(familyId);
+			}
+			
+			return false;
+		}
+		
+		if (previous != null) {
+			//The HUSB/WIFE line has been replaced already
+			GedcomIndividual previousSpouse = getIndividual(previous);
+			
+			if (previousSpouse != null) {
+				previousSpouse.removeSpouseFamilyLink(familyId);
+			} else if (!structuresModified) {
+				missingIndividuals.remove(previous);
+			}
+			
+			familiesOfParent.remove(previous, family);
+			pendingReferencesOutdated = true;
+			
+			if (!structuresModified) {
+				unrelateSpouse(previous, other, family);
+			}
+		}
+		
+		familiesOfParent.put(spouseId, family);
+		updateSingleParentEntry(family);
+		
+		if (!structuresModified) {
+			relateSpouse(spouseId, other, family);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Removes the HUSB or WIFE line which links to the individual from the 
+	 * family and the FAMS line from the individual, and updates the family 
+	 * relations without rebuilding them. The individual does not have to be in 
+	 * this storage, which allows to remove links to missing individuals.
+	 * 
+	 * @param familyId
+	 * @param spouseId
+	 * @return <code>true</code> if any of the two links has been removed
+	 */
+	public boolean unlinkSpouse(String familyId, String spouseId) {
+		GedcomFamily family = getFamily(familyId);
+		
+		if (family == null || spouseId == null) {
+			return false;
+		}
+		
+		ensureFamiliesOfParent();
+		
+		boolean removed = false;
+		
+		if (spouseId.equals(family.getHusbandLink())) {
+			removed = family.removeHusbandLink();
+		} else if (spouseId.equals(family.getWifeLink())) {
+			removed = family.removeWifeLink();
+		}
+		
+		GedcomIndividual spouse = getIndividual(spouseId);
+		
+		if (spouse == null) {
+			if (removed && !structuresModified) {
+				missingIndividuals.remove(spouseId);
+			}
+		} else {
+			removed |= spouse.removeSpouseFamilyLink(familyId);
+		}
+		
+		if (removed) {
+			pendingReferencesOutdated = true;
+			familiesOfParent.remove(spouseId, family);
+			updateSingleParentEntry(family);
+			
+			if (!structuresModified) {
+				String other = family.getHusbandLink();
+				if (other == null) {
+					other = family.getWifeLink();
+				}
+				
+				unrelateSpouse(spouseId, other, family);
+			}
+		}
+		
+		return removed;
+	}
+	
+	/**
+	 * Lists the family under the <code>null</code> key of the families of the 
+	 * parents if it has a single parent, like {@link #buildFamilyRelations()} 
+	 * does. A family with two parents or without parents is not listed there.
+	 * 
+	 * @param family
+	 */
+	private void updateSingleParentEntry(GedcomFamily family) {
+		if ((family.getHusbandLink() == null) != (family.getWifeLink() == null)) {
+			familiesOfParent.put(null, family);
+		} else {
+			familiesOfParent.remove(null, family);
+		}
+	}
+	
+	/**
+	 * Adds the partner and the children of the family to the newly linked 
+	 * spouse
+	 * 
+	 * @param spouseId
+	 * @param otherId The other spouse of the family
+	 * @param family
+	 */
+	private void relateSpouse(String spouseId, String otherId, GedcomFamily family) {
+		GedcomIndividual other = getIndividual(otherId);
+		
+		if (other != null) {
+			partnersOfIndividual.put(spouseId, other);
+			partnersOfIndividual.put(otherId, getIndividual(spouseId));
+		}
+		
+		for (String childLink : family.getChildLinks()) {
+			putIfNotNull(childrenOfIndividual, spouseId, getIndividual(childLink));
+		}
+	}
+	
+	/**
+	 * Removes the partner and the children of the family from the unlinked 
+	 * spouse, unless they are related through another family. The family has 
+	 * to be removed from the families of the spouse already.
+	 * 
+	 * @param spouseId
+	 * @param otherId The remaining spouse of the family
+	 * @param family
+	 */
+	private void unrelateSpouse(String spouseId, String otherId, GedcomFamily family) {
+		if (otherId != null && !sharesFamily(spouseId, otherId)) {
+			partnersOfIndividual.remove(spouseId, getIndividual(otherId));
+			partnersOfIndividual.remove(otherId, getIndividual(spouseId));
+		}
+		
+		for (String childLink : family.getChildLinks()) {
+			unrelateChild(spouseId, childLink);
+		}
+	}
+	
+	/**
+	 * Removes the child from the children of the parent, unless the child 
+	 * is in another family of the parent
+	 * 
+	 * @param parentId
+	 * @param childId
+	 */
+	private void unrelateChild(String parentId, String childId) {
+		if (parentId == null) {
+			return;
+		}
+		
+		for (GedcomFamily family : familiesOfChild.get(childId)) {
+			if (familiesOfParent.containsEntry(parentId, family)) {
+				return;
+			}
+		}
+		
+		childrenOfIndividual.remove(parentId, getIndividual(childId));
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param spouse1Id
+	 * @param spouse2Id
+	 * @return <code>true</code> if the two individuals are spouses in at 
+	 * least one family
+	 */
+	private boolean sharesFamily(String spouse1Id, String spouse2Id) {
+		if (spouse1Id == null || spouse2Id == null) {
+			return false;
+		}
+		
+		return !Collections.disjoint(familiesOfParent.get(spouse1Id), familiesOfParent.get(spouse2Id));
+	}
+	
+	/**
+	 * Marks the family relations as outdated, for example after links of 
+	 * structures in this storage have been changed directly. The relations are 
+	 * rebuilt with the next call which needs them, and the pending references 
+	 * are checked again with the next call to {@link #commitReferences()}.
+	 */
+	public void invalidateFamilyRelations() {
+		structuresModified = true;
+		familiesOfParentOutdated = true;
+		pendingReferencesOutdated = true;
+	}
+	
 	/**
 	 * Returns <code>true</code> if a structure has been added or removed 
 	 * after the last call to {@link #buildFamilyRelations()}.
@@ -980,17 +2034,215 @@ public class GedcomCreatorStructureStorage {
 	}
 	
 	/**
-	 * Collects information about the relations between individuals/families.
+	 * If set, {@link #buildFamilyRelations()} throws a {@link GedcomCreatorError} 
+	 * at the first missing individual or family, and {@link #commitReferences()} 
+	 * throws a {@link GedcomCreatorError} if there are unresolved references.
 	 * 
+	 * @param throwExceptionOnMissingStructures
 	 */
-	public void buildFamilyRelations() {
-		clearFamilyRelations();
+	public void setThrowExceptionOnMissingStructures(boolean throwExceptionOnMissingStructures) {
+		this.throwExceptionOnMissingStructures = throwExceptionOnMissingStructures;
+	}
+	
+	/**
+	 * Enables the reference check at insert time. The links of each added 
+	 * family and individual (HUSB, WIFE, CHIL, FAMS, FAMC) are looked up in this 
+	 * storage. Links to records which do not exist yet are kept as pending 
+	 * references, and they are resolved as soon as the linked record is added. 
+	 * Each insert therefore only costs a lookup per link, and the references 
+	 * which are still unresolved can be checked at any time with 
+	 * {@link #commitReferences()}, without building the family relations.<br />
+	 * <br />
+	 * Enabling the check verifies all the records which are already in this 
+	 * storage. If records have been removed or links have been changed after 
+	 * that (through the link methods of this storage or with 
+	 * {@link #invalidateFamilyRelations()}), {@link #commitReferences()} checks 
+	 * all the records again.
+	 * 
+	 * @param checkReferencesOnInsert
+	 */
+	public void setCheckReferencesOnInsert(boolean checkReferencesOnInsert) {
+		this.checkReferencesOnInsert = checkReferencesOnInsert;
+		
+		if (checkReferencesOnInsert) {
+			checkAllReferences();
+		} else {
+			pendingIndividualReferences.clear();
+			pendingFamilyReferences.clear();
+		}
+	}
+	
+	/**
+	 * Returns the links to individuals and families which have not been 
+	 * added to this storage (yet). Only available if the reference check at insert 
+	 * time is enabled with {@link #setCheckReferencesOnInsert(boolean)}.
+	 * 
+	 * @return
+	 * @throws GedcomCreatorError If there are unresolved references and 
+	 * {@link #setThrowExceptionOnMissingStructures(boolean)} is set
+	 */
+	public List<MissingReference> commitReferences() {
+		if (checkReferencesOnInsert && pendingReferencesOutdated) {
+			checkAllReferences();
+		}
+		
+		List<MissingReference> unresolved = new ArrayList<>(
+				pendingIndividualReferences.size() + pendingFamilyReferences.size());
+		unresolved.addAll(pendingIndividualReferences.values());
+		unresolved.addAll(pendingFamilyReferences.values());
+		
+		if (throwExceptionOnMissingStructures && !unresolved.isEmpty()) {
+			throw new GedcomCreatorError(unresolved.size() + " references to individuals " + 
+					"or families could not be resolved: " + unresolved);
+		}
+		
+		return unresolved;
+	}
+	
+	/**
+	 * Checks the references of all the records in this storage again
+	 * 
+	 */
+	private void checkAllReferences() {
+		pendingIndividualReferences.clear();
+		pendingFamilyReferences.clear();
+		pendingReferencesOutdated = false;
+		
+		for (Map.Entry<String, GedcomIndividual> entry : individuals.entrySet()) {
+			checkReferences(entry.getKey(), entry.getValue());
+		}
+		
+		for (Map.Entry<String, GedcomFamily> entry : families.entrySet()) {
+			checkReferences(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * Resolves the pending references to the added individual and adds the 
+	 * links of the individual to families which do not exist as pending references.
+	 * 
+	 * @param individualId
+	 * @param individual
+	 */
+	private void checkReferences(String individualId, GedcomIndividual individual) {
+		pendingIndividualReferences.removeAll(individualId);
+		
+		for (String link : individual.getSpouseFamilyLinks()) {
+			if (link != null && !families.containsKey(link)) {
+				pendingFamilyReferences.put(link, new MissingReference(individualId, "FAMS", link));
+			}
+		}
+		
+		for (String link : individual.getChildFamilyLinks()) {
+			if (link != null && !families.containsKey(link)) {
+				pendingFamilyReferences.put(link, new MissingReference(individualId, "FAMC", link));
+			}
+		}
+	}
+	
+	/**
+	 * Resolves the pending references to the added family and adds the 
+	 * links of the family to individuals which do not exist as pending references.
+	 * 
+	 * @param familyId
+	 * @param family
+	 */
+	private void checkReferences(String familyId, GedcomFamily family) {
+		pendingFamilyReferences.removeAll(familyId);
+		
+		String link = family.getHusbandLink();
+		if (link != null && !individuals.containsKey(link)) {
+			pendingIndividualReferences.put(link, new MissingReference(familyId, "HUSB", link));
+		}
+		
+		link = family.getWifeLink();
+		if (link != null && !individuals.containsKey(link)) {
+			pendingIndividualReferences.put(link, new MissingReference(familyId, "WIFE", link));
+		}
+		
+		for (String childLink : family.getChildLinks()) {
+			if (childLink != null && !individuals.containsKey(childLink)) {
+				pendingIndividualReferences.put(childLink, new MissingReference(familyId, "CHIL", childLink));
+			}
+		}
+	}
+	
+	/**
+	 * Removes the pending references of a removed individual
+	 * 
+	 * @param individualId
+	 * @param individual
+	 */
+	private void uncheckReferences(String individualId, GedcomIndividual individual) {
+		for (String link : individual.getSpouseFamilyLinks()) {
+			if (link != null) {
+				pendingFamilyReferences.remove(link, new MissingReference(individualId, "FAMS", link));
+			}
+		}
+		
+		for (String link : individual.getChildFamilyLinks()) {
+			if (link != null) {
+				pendingFamilyReferences.remove(link, new MissingReference(individualId, "FAMC", link));
+			}
+		}
+	}
+	
+	/**
+	 * Removes the pending references of a removed family
+	 * 
+	 * @param familyId
+	 * @param family
+	 */
+	private void uncheckReferences(String familyId, GedcomFamily family) {
+		String link = family.getHusbandLink();
+		if (link != null) {
+			pendingIndividualReferences.remove(link, new MissingReference(familyId, "HUSB", link));
+		}
+		
+		link = family.getWifeLink();
+		if (link != null) {
+			pendingIndividualReferences.remove(link, new MissingReference(familyId, "WIFE", link));
+		}
+		
+		for (String childLink : family.getChildLinks()) {
+			if (childLink != null) {
+				pendingIndividualReferences.remove(childLink, new MissingReference(familyId, "CHIL", childLink));
+			}
+		}
+	}
+	
+	/**
+	 * Collects information about the relations between individuals/families. 
+	 * The progress is reported to the relation listeners, which can also cancel 
+	 * the operation. If it is cancelled, the partially built relations are 
+	 * cleared (the families of the parents, which are always kept up to date, 
+	 * stay as they are) and built again with the next call which needs them. 
+	 * The methods which build the relations on demand throw a 
+	 * {@link CancellationException} in that case.
+	 * 
+	 * @return <code>false</code> if the operation has been cancelled by a 
+	 * {@link GedcomRelationListener}
+	 */
+	public boolean buildFamilyRelations() {
+		long start = metrics.start();
+		
+		clearBuiltRelations();
+		//Replaces the families of the parents only if the build completes
+		HashMultimap<String, GedcomFamily> builtFamiliesOfParent = HashMultimap.create();
 		
 		//Set this flag at the beginning so that calls to other methods in this 
 		//class do not trigger a family relations update
 		structuresModified = false;
 		
+		long phaseStart = System.nanoTime();
+		int processed = 0;
+		firePhaseStarted(Phase.INDIVIDUALS, individuals.size());
+		
 		for (GedcomIndividual indi : individuals.values()) {
+			if (!reportProgress(Phase.INDIVIDUALS, processed++, individuals.size(), missingFamilies.size(), phaseStart)) {
+				firePhaseFinished(Phase.INDIVIDUALS, processed - 1, missingFamilies.size(), phaseStart, true);
+				return cancelFamilyRelations(start);
+			}
 			
 			//--- missingFamilies
 			List<String> spouseFamilyLinks = indi.getSpouseFamilyLinks();
@@ -1020,21 +2272,36 @@ public class GedcomCreatorStructureStorage {
 			
 		}
 		
+		firePhaseFinished(Phase.INDIVIDUALS, processed, missingFamilies.size(), phaseStart, false);
+		
+		phaseStart = System.nanoTime();
+		processed = 0;
+		firePhaseStarted(Phase.FAMILIES, families.size());
 		
 		for (GedcomFamily fam : families.values()) {
+			if (!reportProgress(Phase.FAMILIES, processed++, families.size(), missingIndividuals.size(), phaseStart)) {
+				firePhaseFinished(Phase.FAMILIES, processed - 1, missingIndividuals.size(), phaseStart, true);
+				return cancelFamilyRelations(start);
+			}
 			
 			String husbLink = fam.getHusbandLink();
 			String wifeLink = fam.getWifeLink();
 			
 			//--- familiesOfParent
-			addFamilyForParents(husbLink, wifeLink, fam);
+			addFamilyForParents(builtFamiliesOfParent, husbLink, wifeLink, fam);
 			
 			//--- partnersOfIndividual
 			//--- missingIndividuals
-			if (husbLink != null && wifeLink != null && individuals.containsKey(husbLink)) {
+			boolean husbandExists = husbLink != null && individuals.containsKey(husbLink);
+			boolean wifeExists = wifeLink != null && individuals.containsKey(wifeLink);
+			
+			if (husbandExists && wifeExists) {
 				partnersOfIndividual.put(husbLink, individuals.get(wifeLink));
-			} else {
-				addIfNotNull(missingIndividuals, husbLink);
+				partnersOfIndividual.put(wifeLink, individuals.get(husbLink));
+			}
+			
+			if (husbLink != null && !husbandExists) {
+				missingIndividuals.add(husbLink);
 				if (throwExceptionOnMissingStructures) {
 					throw new GedcomCreatorError("A husband link to the individual " + husbLink + 
 							" is listed in the family " + fam.getId() + 
@@ -1042,10 +2309,8 @@ public class GedcomCreatorStructureStorage {
 				}
 			}
 			
-			if (wifeLink != null && husbLink != null && individuals.containsKey(wifeLink)) {
-				partnersOfIndividual.put(wifeLink, individuals.get(husbLink));
-			} else {
-				addIfNotNull(missingIndividuals, husbLink);
+			if (wifeLink != null && !wifeExists) {
+				missingIndividuals.add(wifeLink);
 				if (throwExceptionOnMissingStructures) {
 					throw new GedcomCreatorError("A wife link to the individual " + wifeLink + 
 							" is listed in the family " + fam.getId() + 
@@ -1075,17 +2340,73 @@ public class GedcomCreatorStructureStorage {
 			
 		}
 		
+		firePhaseFinished(Phase.FAMILIES, processed, missingIndividuals.size(), phaseStart, false);
+		
+		familiesOfParent = builtFamiliesOfParent;
+		familiesOfParentOutdated = false;
+		
+		metrics.stop(Operation.BUILD_FAMILY_RELATIONS, start);
+		metrics.relationIndexSize(getRelationIndexSize());
+		
+		return true;
+	}
+	
+	/**
+	 * Clears the partially built relations after a cancellation. The families 
+	 * of the parents are kept, since they are needed to add families.
+	 * 
+	 * @param start The start of the metrics measurement
+	 * @return Always <code>false</code>
+	 */
+	private boolean cancelFamilyRelations(long start) {
+		clearBuiltRelations();
+		structuresModified = true;
+		
+		metrics.stop(Operation.BUILD_FAMILY_RELATIONS, start);
+		
+		return false;
 	}
 	
 	/**
+	 * Returns the number of entries in the relation index which is built 
+	 * through {@link #buildFamilyRelations()} (families of parents and children, 
+	 * partners and children of individuals).
 	 * 
+	 * @return
+	 */
+	public int getRelationIndexSize() {
+		return familiesOfParent.size() + familiesOfChild.size() 
+				+ partnersOfIndividual.size() + childrenOfIndividual.size();
+	}
+	
+	/**
+	 * Removes all the families without parents, and all the families with a 
+	 * single parent and no children. The links to the removed families are 
+	 * removed from the individuals.<br />
+	 * <br />
+	 * The progress is reported to the relation listeners. If the cleanup is 
+	 * cancelled, only the families which have been found until then are removed.
 	 * 
+	 * @return The number of removed families
 	 */
-	public void cleanup() {
+	public int cleanup() {
+		long start = metrics.start();
 		
 		Set<GedcomFamily> familiesToRemove = new HashSet<>();
 		
+		long phaseStart = System.nanoTime();
+		int processed = 0;
+		boolean cancelled = false;
+		firePhaseStarted(Phase.CLEANUP, families.size());
+		
 		for (GedcomFamily family : families.values()) {
+			if (!reportProgress(Phase.CLEANUP, processed, families.size(), familiesToRemove.size(), phaseStart)) {
+				cancelled = true;
+				break;
+			}
+			
+			processed++;
+			
 			String familyId = family.getId();
 			String husbId = family.getHusbandLink();
 			String wifeId = family.getWifeLink();
@@ -1118,12 +2439,130 @@ public class GedcomCreatorStructureStorage {
 			
 		}
 		
-		families.values().removeAll(familiesToRemove);
+		Iterator<Map.Entry<String, GedcomFamily>> iterator = families.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, GedcomFamily> entry = iterator.next();
+			
+			if (familiesToRemove.contains(entry.getValue())) {
+				iterator.remove();
+				
+				if (checkReferencesOnInsert) {
+					uncheckReferences(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		
+		familiesOfParent.values().removeAll(familiesToRemove);
+		
+		if (checkReferencesOnInsert && !familiesToRemove.isEmpty()) {
+			//The links to the removed families are missing now
+			pendingReferencesOutdated = true;
+		}
 		
 		structuresModified = true;
 		
-		System.out.println("Cleanup: " + familiesToRemove.size() + " families removed.");
+		LOGGER.debug("Cleanup: {} families removed.", familiesToRemove.size());
+		
+		firePhaseFinished(Phase.CLEANUP, processed, familiesToRemove.size(), phaseStart, cancelled);
+		metrics.stop(Operation.CLEANUP, start);
+		
+		return familiesToRemove.size();
+	}
+	
+	/**
+	 * Adds a listener which is notified about the progress of 
+	 * {@link #buildFamilyRelations()} and {@link #cleanup()}
+	 * 
+	 * @param listener
+	 */
+	public void addRelationListener(GedcomRelationListener listener) {
+		relationListeners.add(listener);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param listener
+	 * @return
+	 */
+	public boolean removeRelationListener(GedcomRelationListener listener) {
+		return relationListeners.remove(listener);
+	}
+	
+	/**
+	 * Sets the number of records after which the progress is reported 
+	 * to the relation listeners. Default is 1000.
+	 * 
+	 * @param progressInterval
+	 */
+	public void setProgressInterval(int progressInterval) {
+		if (progressInterval < 1) {
+			throw new IllegalArgumentException("The progress interval has to be at least 1");
+		}
+		
+		this.progressInterval = progressInterval;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param phase
+	 * @param records
+	 */
+	private void firePhaseStarted(Phase phase, int records) {
+		for (GedcomRelationListener listener : relationListeners) {
+			listener.phaseStarted(phase, records);
+		}
+	}
+	
+	/**
+	 * Notifies the listeners if the progress interval has been reached
+	 * 
+	 * @param phase
+	 * @param processed
+	 * @param records
+	 * @param missingReferences
+	 * @param phaseStart The {@link System#nanoTime()} at the start of the phase
+	 * @return <code>false</code> if a listener cancelled the operation
+	 */
+	private boolean reportProgress(Phase phase, int processed, int records, int missingReferences, 
+			long phaseStart) {
+		if (relationListeners.isEmpty() || processed == 0 || processed % progressInterval != 0) {
+			return true;
+		}
+		
+		boolean proceed = true;
+		long elapsed = System.nanoTime() - phaseStart;
 		
+		for (GedcomRelationListener listener : relationListeners) {
+			if (!listener.progress(phase, processed, records, missingReferences, elapsed)) {
+				proceed = false;
+			}
+		}
+		
+		return proceed;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param phase
+	 * @param processed
+	 * @param missingReferences
+	 * @param phaseStart The {@link System#nanoTime()} at the start of the phase
+	 * @param cancelled
+	 */
+	private void firePhaseFinished(Phase phase, int processed, int missingReferences, 
+			long phaseStart, boolean cancelled) {
+		if (relationListeners.isEmpty()) {
+			return;
+		}
+		
+		long elapsed = System.nanoTime() - phaseStart;
+		
+		for (GedcomRelationListener listener : relationListeners) {
+			listener.phaseFinished(phase, processed, missingReferences, elapsed, cancelled);
+		}
 	}
 	
 	/**
@@ -1266,5 +2705,100 @@ public class GedcomCreatorStructureStorage {
 		
 		return false;
 	}
+	
+	
+	/*************************************************************************
+	 * Rewrites the XRefs of a range of structures, splitting the range up 
+	 * into parallel tasks
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class RemapTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		/** The number of structures below which a task is not split any further */
+		private static final int THRESHOLD = 256;
+		
+		private AbstractGedcomStructure[] structures = null;
+		private GedcomXRefMapper mapper = null;
+		private int from = 0;
+		private int to = 0;
+		
+		/**
+		 * 
+		 * 
+		 * @param structures
+		 * @param mapper
+		 * @param from
+		 * @param to
+		 */
+		public RemapTask(AbstractGedcomStructure[] structures, GedcomXRefMapper mapper, 
+				int from, int to) {
+			this.structures = structures;
+			this.mapper = mapper;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					structures[i].remapXRefs(mapper);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RemapTask(structures, mapper, from, middle), 
+						new RemapTask(structures, mapper, middle, to));
+			}
+		}
+	}
+	
+	
+	/*************************************************************************
+	 * Maps the XRefs with a binary search in the sorted arrays of the old IDs
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class SortedXRefMapper implements GedcomXRefMapper {
+		
+		private String[] oldIndividualIds = null;
+		private String[] newIndividualIds = null;
+		private String[] oldFamilyIds = null;
+		private String[] newFamilyIds = null;
+		
+		/**
+		 * 
+		 * 
+		 * @param oldIndividualIds Has to be sorted
+		 * @param newIndividualIds
+		 * @param oldFamilyIds Has to be sorted
+		 * @param newFamilyIds
+		 */
+		public SortedXRefMapper(String[] oldIndividualIds, String[] newIndividualIds, 
+				String[] oldFamilyIds, String[] newFamilyIds) {
+			this.oldIndividualIds = oldIndividualIds;
+			this.newIndividualIds = newIndividualIds;
+			this.oldFamilyIds = oldFamilyIds;
+			this.newFamilyIds = newFamilyIds;
+		}
+		
+		@Override
+		public String map(String tag, String xref) {
+			if (GedcomXRefRemapping.isIndividualXRef(tag)) {
+				int index = Arrays.binarySearch(oldIndividualIds, xref);
+				return index < 0 ? null : newIndividualIds[index];
+			} else if (GedcomXRefRemapping.isFamilyXRef(tag)) {
+				int index = Arrays.binarySearch(oldFamilyIds, xref);
+				return index < 0 ? null : newFamilyIds[index];
+			}
+			
+			return null;
+		}
+	}
 
 }
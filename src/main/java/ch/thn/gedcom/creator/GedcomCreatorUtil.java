@@ -32,8 +32,6 @@ import ch.thn.gedcom.store.GedcomStore;
  */
 public class GedcomCreatorUtil {
 	
-	private static int IDCount = 0;
-	
 	/**
 	 * Creates the gedcom structure according to the type of the given gedcom head node
 	 * 
@@ -43,6 +41,19 @@ public class GedcomCreatorUtil {
 	 */
 	public static AbstractGedcomStructure gedcomCreatorStructureFactory(
 			GedcomStore store, GedcomTree gedcomHeadNode) {
+		return gedcomCreatorStructureFactory(new GedcomStoreContext(store), gedcomHeadNode);
+	}
+	
+	/**
+	 * Creates the gedcom structure according to the type of the given gedcom head 
+	 * node.
+	 * 
+	 * @param store
+	 * @param gedcomHeadNode
+	 * @return
+	 */
+	public static AbstractGedcomStructure gedcomCreatorStructureFactory(
+			GedcomStoreContext store, GedcomTree gedcomHeadNode) {
 		
 		String structureName = gedcomHeadNode.getStructureName();
 		
@@ -84,7 +95,7 @@ public class GedcomCreatorUtil {
 			if (structureId != null) {
 				structureStorage.addEOF(structureId, (GedcomEOF)structure);
 			} else {
-				structureStorage.addEOF(String.valueOf(generateID()), (GedcomEOF)structure);
+				structureStorage.addEOF(structureStorage.generateId(), (GedcomEOF)structure);
 			}
 			break;
 		case AbstractGedcomStructure.FAM_RECORD:
@@ -98,7 +109,7 @@ public class GedcomCreatorUtil {
 			if (structureId != null) {
 				structureStorage.addHeader(structureId, (GedcomHeader)structure);
 			} else {
-				structureStorage.addHeader(String.valueOf(generateID()), (GedcomHeader)structure);
+				structureStorage.addHeader(structureStorage.generateId(), (GedcomHeader)structure);
 			}
 			break;
 		case AbstractGedcomStructure.INDIVIDUAL_RECORD:
@@ -120,14 +131,5 @@ public class GedcomCreatorUtil {
 		}
 		
 	}
-	
-	/**
-	 * 
-	 * 
-	 * @return
-	 */
-	private static int generateID() {
-		return IDCount++;
-	}
 
 }
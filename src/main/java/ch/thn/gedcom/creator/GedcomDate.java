@@ -0,0 +1,558 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.Locale;
+
+/**
+ * A parsed gedcom date value (for example "12 MAR 1900", "ABT 1900",
+ * "BET 1900 AND 1910" or "FROM MAR 1900 TO 1910").<br />
+ * <br />
+ * The date is converted into a range of day numbers (days since 1970-01-01 in
+ * the gregorian calendar). Partial dates cover the whole month or year,
+ * open ranges (like "BEF 1900") use {@link #UNKNOWN_DAY} for the open end.
+ * The day numbers can be used for sorting and range filtering without having
+ * to parse the date string again.<br />
+ * <br />
+ * Calendar escapes (like @#DJULIAN@) are ignored and the date is treated
+ * as gregorian date. Dates which can not be parsed (for example date phrases)
+ * have the qualifier {@link Qualifier#UNPARSEABLE} and no day numbers.<br />
+ * <br />
+ * A parsed date is immutable and can be shared between threads.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomDate implements Comparable<GedcomDate> {
+
+	/** Used for an unknown (open) start or end of the date range */
+	public static final int UNKNOWN_DAY = Integer.MIN_VALUE;
+
+	/** The year of a date which could not be parsed */
+	public static final int UNKNOWN_YEAR = Integer.MIN_VALUE;
+
+	/** Gedcom years have at most four digits. Also keeps the day numbers within the int range. */
+	public static final int MAXIMUM_YEAR = 9999;
+
+	private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN",
+		"JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+
+	private final String value;
+	private final Qualifier qualifier;
+
+	private final int earliest;
+	private final int latest;
+	private final int year;
+
+	/**
+	 *
+	 *
+	 * @param value
+	 * @param qualifier
+	 * @param earliest
+	 * @param latest
+	 * @param year
+	 */
+	private GedcomDate(String value, Qualifier qualifier, int earliest, int latest, int year) {
+		this.value = value;
+		this.qualifier = qualifier;
+		this.earliest = earliest;
+		this.latest = latest;
+		this.year = year;
+	}
+
+	/**
+	 * Parses the given gedcom date value.
+	 *
+	 * @param value
+	 * @return The parsed date, or <code>null</code> if the given value is <code>null</code>
+	 */
+	public static GedcomDate parse(String value) {
+		if (value == null) {
+			return null;
+		}
+
+		String[] tokens = value.trim().toUpperCase(Locale.ENGLISH).split("\\s+");
+
+		if (tokens.length == 0 || tokens[0].length() == 0) {
+			return unparseable(value);
+		}
+
+		String first = tokens[0];
+
+		switch (first) {
+		case "ABT":
+			return parseSingle(value, Qualifier.ABOUT, tokens, 1);
+		case "CAL":
+			return parseSingle(value, Qualifier.CALCULATED, tokens, 1);
+		case "EST":
+			return parseSingle(value, Qualifier.ESTIMATED, tokens, 1);
+		case "INT":
+			//The interpreted date is followed by the date phrase
+			int phrase = indexOfPhrase(tokens, 1);
+			return parseSingle(value, Qualifier.INTERPRETED,
+					phrase == -1 ? tokens : copy(tokens, 0, phrase), 1);
+		case "BEF":
+			int[] before = parsePoint(tokens, 1, tokens.length);
+			if (before == null) {
+				return unparseable(value);
+			}
+			return new GedcomDate(value, Qualifier.BEFORE, UNKNOWN_DAY, before[1], before[2]);
+		case "AFT":
+			int[] after = parsePoint(tokens, 1, tokens.length);
+			if (after == null) {
+				return unparseable(value);
+			}
+			return new GedcomDate(value, Qualifier.AFTER, after[0], UNKNOWN_DAY, after[2]);
+		case "BET":
+			int and = indexOf(tokens, 1, "AND");
+			if (and == -1) {
+				return unparseable(value);
+			}
+
+			int[] from = parsePoint(tokens, 1, and);
+			int[] to = parsePoint(tokens, and + 1, tokens.length);
+			if (from == null || to == null) {
+				return unparseable(value);
+			}
+			return new GedcomDate(value, Qualifier.BETWEEN, from[0], to[1], from[2]);
+		case "FROM":
+			int toIndex = indexOf(tokens, 1, "TO");
+			int[] periodStart = parsePoint(tokens, 1, toIndex == -1 ? tokens.length : toIndex);
+			int[] periodEnd = toIndex == -1 ? null : parsePoint(tokens, toIndex + 1, tokens.length);
+			if (periodStart == null || (toIndex != -1 && periodEnd == null)) {
+				return unparseable(value);
+			}
+			return new GedcomDate(value, Qualifier.PERIOD, periodStart[0],
+					periodEnd == null ? UNKNOWN_DAY : periodEnd[1], periodStart[2]);
+		case "TO":
+			int[] periodTo = parsePoint(tokens, 1, tokens.length);
+			if (periodTo == null) {
+				return unparseable(value);
+			}
+			return new GedcomDate(value, Qualifier.PERIOD, UNKNOWN_DAY, periodTo[1], periodTo[2]);
+		default:
+			return parseSingle(value, Qualifier.EXACT, tokens, 0);
+		}
+
+	}
+
+	/**
+	 * Returns the given previously parsed date if it has been parsed from the
+	 * same value, otherwise the value is parsed. This can be used to cache
+	 * a parsed date and only parse it again if the value changes.
+	 *
+	 * @param value
+	 * @param previous
+	 * @return
+	 */
+	public static GedcomDate parse(String value, GedcomDate previous) {
+		if (previous != null && previous.value.equals(value)) {
+			return previous;
+		}
+
+		return parse(value);
+	}
+
+	/**
+	 *
+	 *
+	 * @param value
+	 * @param qualifier
+	 * @param tokens
+	 * @param start
+	 * @return
+	 */
+	private static GedcomDate parseSingle(String value, Qualifier qualifier,
+			String[] tokens, int start) {
+		int[] point = parsePoint(tokens, start, tokens.length);
+
+		if (point == null) {
+			return unparseable(value);
+		}
+
+		return new GedcomDate(value, qualifier, point[0], point[1], point[2]);
+	}
+
+	/**
+	 * Parses a date of the form [calendar escape] [[day] month] year [B.C.]
+	 *
+	 * @param tokens
+	 * @param start
+	 * @param end
+	 * @return An array with the earliest day number, the latest day number and
+	 * the year, or <code>null</code> if the tokens are not a valid date
+	 */
+	private static int[] parsePoint(String[] tokens, int start, int end) {
+		//Skip the calendar escape
+		if (start < end && tokens[start].startsWith("@#")) {
+			start++;
+		}
+
+		boolean bc = false;
+		if (end > start && (tokens[end - 1].equals("B.C.") || tokens[end - 1].equals("BC"))) {
+			bc = true;
+			end--;
+		}
+
+		int count = end - start;
+
+		if (count < 1 || count > 3) {
+			return null;
+		}
+
+		int year = parseYear(tokens[end - 1]);
+
+		if (year == -1 || (bc && year == 0)) {
+			return null;
+		}
+
+		if (bc) {
+			//There is no year 0. 1 B.C. is year 0 in the proleptic gregorian calendar
+			year = 1 - year;
+		}
+
+		if (count == 1) {
+			return new int[] {dayNumber(year, 1, 1), dayNumber(year, 12, 31), year};
+		}
+
+		int month = parseMonth(tokens[end - 2]);
+
+		if (month == -1) {
+			return null;
+		}
+
+		if (count == 2) {
+			return new int[] {dayNumber(year, month, 1),
+					dayNumber(year, month, daysInMonth(year, month)), year};
+		}
+
+		int day = parseNumber(tokens[start]);
+
+		if (day < 1 || day > daysInMonth(year, month)) {
+			return null;
+		}
+
+		int dayNumber = dayNumber(year, month, day);
+		return new int[] {dayNumber, dayNumber, year};
+	}
+
+	/**
+	 * Parses the year. A dual year (like 1699/00) is parsed as the first year.
+	 *
+	 * @param token
+	 * @return The year or -1 if the token is not a valid year (or larger
+	 * than {@link #MAXIMUM_YEAR})
+	 */
+	private static int parseYear(String token) {
+		int slash = token.indexOf('/');
+
+		if (slash != -1) {
+			token = token.substring(0, slash);
+		}
+
+		int year = parseNumber(token);
+		return year > MAXIMUM_YEAR ? -1 : year;
+	}
+
+	/**
+	 *
+	 *
+	 * @param token
+	 * @return The month (1-12) or -1 if the token is not a month
+	 */
+	private static int parseMonth(String token) {
+		for (int i = 0; i < MONTHS.length; i++) {
+			if (MONTHS[i].equals(token)) {
+				return i + 1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 *
+	 *
+	 * @param token
+	 * @return The positive number or -1 if the token is not a number with
+	 * at most four digits
+	 */
+	private static int parseNumber(String token) {
+		if (token.length() == 0 || token.length() > 4) {
+			return -1;
+		}
+
+		int number = 0;
+		for (int i = 0; i < token.length(); i++) {
+			char c = token.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+
+			number = number * 10 + (c - '0');
+		}
+
+		return number;
+	}
+
+	/**
+	 *
+	 *
+	 * @param tokens
+	 * @param start
+	 * @param token
+	 * @return
+	 */
+	private static int indexOf(String[] tokens, int start, String token) {
+		for (int i = start; i < tokens.length; i++) {
+			if (tokens[i].equals(token)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 *
+	 *
+	 * @param tokens
+	 * @param start
+	 * @return The index of the first token of the date phrase in parentheses
+	 */
+	private static int indexOfPhrase(String[] tokens, int start) {
+		for (int i = start; i < tokens.length; i++) {
+			if (tokens[i].startsWith("(")) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 *
+	 *
+	 * @param tokens
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private static String[] copy(String[] tokens, int start, int end) {
+		String[] copy = new String[end - start];
+		System.arraycopy(tokens, start, copy, 0, copy.length);
+		return copy;
+	}
+
+	/**
+	 *
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static GedcomDate unparseable(String value) {
+		return new GedcomDate(value, Qualifier.UNPARSEABLE, UNKNOWN_DAY, UNKNOWN_DAY, UNKNOWN_YEAR);
+	}
+
+	/**
+	 *
+	 *
+	 * @param year
+	 * @param month
+	 * @return
+	 */
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+			return leap ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * Returns the number of days since 1970-01-01 for the given date in the
+	 * proleptic gregorian calendar.
+	 *
+	 * @param year The year, 1 B.C. being year 0. Years beyond about five million
+	 * overflow the day number.
+	 * @param month 1-12
+	 * @param day 1-31
+	 * @return
+	 */
+	public static int dayNumber(int year, int month, int day) {
+		//Count the years from March so that the leap day is at the end of the year
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Returns the original gedcom date value
+	 *
+	 * @return
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public Qualifier getQualifier() {
+		return qualifier;
+	}
+
+	/**
+	 * Returns <code>true</code> if the date is only approximate (ABT, CAL, EST or INT)
+	 *
+	 * @return
+	 */
+	public boolean isApproximate() {
+		return qualifier == Qualifier.ABOUT || qualifier == Qualifier.CALCULATED
+				|| qualifier == Qualifier.ESTIMATED || qualifier == Qualifier.INTERPRETED;
+	}
+
+	/**
+	 *
+	 *
+	 * @return <code>false</code> if the date value could not be parsed
+	 */
+	public boolean isParsed() {
+		return qualifier != Qualifier.UNPARSEABLE;
+	}
+
+	/**
+	 * Returns the first possible day of the date as day number (days since
+	 * 1970-01-01), or {@link #UNKNOWN_DAY} if the beginning is open or unknown
+	 *
+	 * @return
+	 */
+	public int getEarliestDay() {
+		return earliest;
+	}
+
+	/**
+	 * Returns the last possible day of the date as day number (days since
+	 * 1970-01-01), or {@link #UNKNOWN_DAY} if the end is open or unknown
+	 *
+	 * @return
+	 */
+	public int getLatestDay() {
+		return latest;
+	}
+
+	/**
+	 * Returns the year of the (first) date in the value. For dates before
+	 * christ, 1 B.C. is year 0, 2 B.C. is year -1 and so on.
+	 *
+	 * @return The year, or {@link #UNKNOWN_YEAR} if the date could not be parsed
+	 */
+	public int getYear() {
+		return year;
+	}
+
+	/**
+	 * Returns a key which can be used to sort dates. It is the earliest day
+	 * of the date, or the latest day if the beginning is open (for example
+	 * for "BEF 1900"). Unparseable dates have the key {@link #UNKNOWN_DAY} and
+	 * are therefore sorted first.
+	 *
+	 * @return
+	 */
+	public int getSortKey() {
+		return earliest != UNKNOWN_DAY ? earliest : latest;
+	}
+
+	/**
+	 * Returns <code>true</code> if this date could lie within the given
+	 * range of day numbers (both inclusive). Unparseable dates never match.
+	 *
+	 * @param fromDay
+	 * @param toDay
+	 * @return
+	 */
+	public boolean overlaps(int fromDay, int toDay) {
+		if (!isParsed()) {
+			return false;
+		}
+
+		return (earliest == UNKNOWN_DAY || earliest <= toDay)
+				&& (latest == UNKNOWN_DAY || latest >= fromDay);
+	}
+
+	@Override
+	public int compareTo(GedcomDate o) {
+		int c = Integer.compare(getSortKey(), o.getSortKey());
+
+		if (c != 0) {
+			return c;
+		}
+
+		return Integer.compare(latest, o.latest);
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+
+	/*************************************************************************
+	 *
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	public static enum Qualifier {
+		/** A single (possibly partial) date without qualifier */
+		EXACT,
+		/** ABT */
+		ABOUT,
+		/** CAL */
+		CALCULATED,
+		/** EST */
+		ESTIMATED,
+		/** INT, followed by a date phrase */
+		INTERPRETED,
+		/** BEF */
+		BEFORE,
+		/** AFT */
+		AFTER,
+		/** BET ... AND ... */
+		BETWEEN,
+		/** FROM ... TO ..., FROM ... or TO ... */
+		PERIOD,
+		/** The value could not be parsed */
+		UNPARSEABLE;
+	}
+
+}
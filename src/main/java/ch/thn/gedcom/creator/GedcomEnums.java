@@ -16,6 +16,9 @@
  */
 package ch.thn.gedcom.creator;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 
  * 
@@ -39,6 +42,14 @@ public class GedcomEnums {
 		FEMALE("F"), 
 		UNKNOWN(null);
 		
+		private static final Map<String, Sex> VALUES = new HashMap<>();
+		
+		static {
+			for (Sex sex : values()) {
+				VALUES.put(sex.value, sex);
+			}
+		}
+		
 		protected String value = null;
 		
 		private Sex(String value) {
@@ -49,6 +60,18 @@ public class GedcomEnums {
 			return value;
 		}
 		
+		/**
+		 * Returns the enum constant which has the given gedcom value
+		 * 
+		 * @param value
+		 * @return The matching constant, or {@link #UNKNOWN} if no constant has 
+		 * the given value
+		 */
+		public static Sex fromValue(String value) {
+			Sex sex = VALUES.get(value);
+			return sex == null ? UNKNOWN : sex;
+		}
+		
 		@Override
 		public String toString() {
 			return value;
@@ -75,6 +98,16 @@ public class GedcomEnums {
 			return value;
 		}
 		
+		/**
+		 * Returns the enum constant which has the given gedcom value
+		 * 
+		 * @param value
+		 * @return {@link #YES} if the value is "Y", otherwise {@link #NO}
+		 */
+		public static YesNo fromValue(String value) {
+			return YES.value.equals(value) ? YES : NO;
+		}
+		
 		@Override
 		public String toString() {
 			return value;
@@ -91,6 +124,14 @@ public class GedcomEnums {
 	public static enum NameType {
 		UNSPECIFIED(null), AKA("aka"), BIRTH("birth"), IMMIGRANT("immigrant"), MAIDEN("maiden"), MARRIED("married");
 		
+		private static final Map<String, NameType> VALUES = new HashMap<>();
+		
+		static {
+			for (NameType nameType : values()) {
+				VALUES.put(nameType.value, nameType);
+			}
+		}
+		
 		protected String value = null;
 		
 		private NameType(String value) {
@@ -101,6 +142,18 @@ public class GedcomEnums {
 			return value;
 		}
 		
+		/**
+		 * Returns the enum constant which has the given gedcom value
+		 * 
+		 * @param value
+		 * @return The matching constant, or {@link #UNSPECIFIED} if no constant has 
+		 * the given value
+		 */
+		public static NameType fromValue(String value) {
+			NameType nameType = VALUES.get(value);
+			return nameType == null ? UNSPECIFIED : nameType;
+		}
+		
 		@Override
 		public String toString() {
 			return value;
@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+/**
+ * Allocates the IDs of the structures of a {@link GedcomCreatorStructureStorage} 
+ * which do not have an ID of their own (like the header or EOF). Implementations 
+ * have to be thread safe, so that structures can be created in parallel.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface GedcomIdAllocator {
+	
+	/**
+	 * 
+	 * 
+	 * @return A new ID which has not been returned by this allocator before
+	 */
+	public String nextId();
+
+}
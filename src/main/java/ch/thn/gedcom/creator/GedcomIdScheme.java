@@ -0,0 +1,68 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+/**
+ * Defines the IDs which are assigned to the individuals and families when 
+ * a structure storage is renumbered with 
+ * {@link GedcomCreatorStructureStorage#renumber(GedcomIdScheme)}. The default 
+ * implementation creates the IDs from a prefix and a sequential number 
+ * starting at 1 (for example I1..In and F1..Fn).
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomIdScheme {
+	
+	/** Compact IDs I1..In for individuals and F1..Fn for families */
+	public static final GedcomIdScheme COMPACT = new GedcomIdScheme("I", "F");
+	
+	private String individualPrefix = null;
+	private String familyPrefix = null;
+	
+	/**
+	 * 
+	 * 
+	 * @param individualPrefix
+	 * @param familyPrefix
+	 */
+	public GedcomIdScheme(String individualPrefix, String familyPrefix) {
+		this.individualPrefix = individualPrefix;
+		this.familyPrefix = familyPrefix;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param number The sequential number of the individual, starting at 1
+	 * @return
+	 */
+	public String getIndividualId(int number) {
+		return individualPrefix + number;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param number The sequential number of the family, starting at 1
+	 * @return
+	 */
+	public String getFamilyId(int number) {
+		return familyPrefix + number;
+	}
+
+}
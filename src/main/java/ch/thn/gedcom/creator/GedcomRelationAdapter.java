@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+/**
+ * A {@link GedcomRelationListener} which does nothing and never cancels. Can be 
+ * extended to only override the needed methods.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public abstract class GedcomRelationAdapter implements GedcomRelationListener {
+	
+	@Override
+	public void phaseStarted(Phase phase, int records) {
+		
+	}
+	
+	@Override
+	public boolean progress(Phase phase, int processed, int records, int missingReferences, 
+			long elapsedNanos) {
+		return true;
+	}
+	
+	@Override
+	public void phaseFinished(Phase phase, int processed, int missingReferences, 
+			long elapsedNanos, boolean cancelled) {
+		
+	}
+
+}
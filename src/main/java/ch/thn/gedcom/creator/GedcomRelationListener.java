@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+/**
+ * Reports the progress of {@link GedcomCreatorStructureStorage#buildFamilyRelations()} 
+ * and {@link GedcomCreatorStructureStorage#cleanup()}. The progress is reported 
+ * each time a number of records has been processed (see 
+ * {@link GedcomCreatorStructureStorage#setProgressInterval(int)}), and the 
+ * operation can be cancelled by returning <code>false</code> from 
+ * {@link #progress(Phase, int, int, int, long)}.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface GedcomRelationListener {
+	
+	/**
+	 * The phases of building the family relations and the cleanup
+	 *
+	 */
+	public enum Phase {
+		/** Building the relations: going through all individuals */
+		INDIVIDUALS, 
+		/** Building the relations: going through all families */
+		FAMILIES, 
+		/** Cleanup: going through all families */
+		CLEANUP;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param phase
+	 * @param records The number of records which are processed in this phase
+	 */
+	public void phaseStarted(Phase phase, int records);
+	
+	/**
+	 * 
+	 * 
+	 * @param phase
+	 * @param processed The number of records processed so far
+	 * @param records The number of records which are processed in this phase
+	 * @param missingReferences The number of missing references found so far 
+	 * (for the cleanup phase the number of families which are removed)
+	 * @param elapsedNanos The time since the start of the phase
+	 * @return <code>false</code> to cancel the operation
+	 */
+	public boolean progress(Phase phase, int processed, int records, int missingReferences, 
+			long elapsedNanos);
+	
+	/**
+	 * Called at the end of a phase, also if the phase has been cancelled
+	 * 
+	 * @param phase
+	 * @param processed The number of processed records
+	 * @param missingReferences The number of missing references found (for the 
+	 * cleanup phase the number of removed families)
+	 * @param elapsedNanos The duration of the phase
+	 * @param cancelled
+	 */
+	public void phaseFinished(Phase phase, int processed, int missingReferences, 
+			long elapsedNanos, boolean cancelled);
+
+}
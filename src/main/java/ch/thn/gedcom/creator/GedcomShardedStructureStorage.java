@@ -0,0 +1,633 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ch.thn.gedcom.creator.analysis.MissingReference;
+import ch.thn.gedcom.creator.metrics.GedcomMetrics;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+/**
+ * Distributes the individuals and families over several 
+ * {@link GedcomCreatorStructureStorage}s (shards), by the hash of their ID. 
+ * Each shard has its own maps and its own family relations, thus the shards 
+ * can be built and rebuilt independently and in parallel.<br />
+ * <br />
+ * A family can be in a different shard than its husband, wife and children. 
+ * The family relations of a shard therefore only contain the families of that 
+ * shard, and its missing individuals and families also contain the records 
+ * of the other shards. The methods of this class combine the shards and only 
+ * report records which do not exist in any shard.<br />
+ * <br />
+ * The reference checks ({@link #setCheckReferencesOnInsert(boolean)}, 
+ * {@link #setThrowExceptionOnMissingStructures(boolean)}) and the metrics 
+ * ({@link #setMetrics(GedcomMetrics)}) are set on this class, which resolves 
+ * the links across the shards and passes the settings on to the shards. They 
+ * should not be set on a shard directly, since a shard on its own reports the 
+ * records of the other shards as missing.<br />
+ * <br />
+ * All the shards share one ID allocator. The check for another family with 
+ * the same husband and wife is only done within the shard of the family. 
+ * Headers, submitters and EOFs are not sharded, they can be added to any 
+ * shard directly (see {@link #getShard(int)}).
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomShardedStructureStorage {
+	
+	private final GedcomCreatorStructureStorage[] shards;
+	private final ForkJoinPool pool;
+	
+	private GedcomMetrics metrics = GedcomMetrics.NOOP;
+	private boolean throwExceptionOnMissingStructures = false;
+	private boolean checkReferencesOnInsert = false;
+	
+	/**
+	 * A sharded storage which builds the shards on the common fork join pool
+	 *
+	 * @param shardCount
+	 */
+	public GedcomShardedStructureStorage(int shardCount) {
+		this(shardCount, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 *
+	 *
+	 * @param shardCount
+	 * @param pool The pool which builds the family relations of the shards
+	 */
+	public GedcomShardedStructureStorage(int shardCount, ForkJoinPool pool) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("At least one shard is needed");
+		}
+		
+		this.pool = pool;
+		
+		shards = new GedcomCreatorStructureStorage[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new GedcomCreatorStructureStorage();
+		}
+	}
+	
+	/**
+	 * Sets the metrics which record the operations of all the shards. The size 
+	 * of the relation index is reported for all the shards together, after 
+	 * {@link #buildFamilyRelations()}.
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics(GedcomMetrics metrics) {
+		this.metrics = (metrics == null ? GedcomMetrics.NOOP : metrics);
+		
+		GedcomMetrics shardMetrics = new ShardMetrics(this.metrics);
+		for (GedcomCreatorStructureStorage shard : shards) {
+			shard.setMetrics(shardMetrics);
+		}
+	}
+	
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public GedcomMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * If set, {@link #getMissingIndividuals()}, {@link #getMissingFamilies()} 
+	 * and {@link #commitReferences()} throw a {@link GedcomCreatorError} if 
+	 * there are links to records which do not exist in any shard.
+	 *
+	 * @param throwExceptionOnMissingStructures
+	 */
+	public void setThrowExceptionOnMissingStructures(boolean throwExceptionOnMissingStructures) {
+		this.throwExceptionOnMissingStructures = throwExceptionOnMissingStructures;
+	}
+	
+	/**
+	 * Enables the reference check at insert time in all the shards, see 
+	 * {@link GedcomCreatorStructureStorage#setCheckReferencesOnInsert(boolean)}. 
+	 * The links to records of other shards are kept as pending references by 
+	 * the shards, and {@link #commitReferences()} resolves them across the 
+	 * shards.
+	 *
+	 * @param checkReferencesOnInsert
+	 */
+	public void setCheckReferencesOnInsert(boolean checkReferencesOnInsert) {
+		this.checkReferencesOnInsert = checkReferencesOnInsert;
+		
+		for (GedcomCreatorStructureStorage shard : shards) {
+			shard.setCheckReferencesOnInsert(checkReferencesOnInsert);
+		}
+	}
+	
+	/**
+	 * Returns the links to individuals and families which do not exist in any 
+	 * shard. Only available if the reference check at insert time is enabled 
+	 * with {@link #setCheckReferencesOnInsert(boolean)}.
+	 *
+	 * @return
+	 * @throws GedcomCreatorError If there are unresolved references and 
+	 * {@link #setThrowExceptionOnMissingStructures(boolean)} is set
+	 */
+	public List<MissingReference> commitReferences() {
+		List<MissingReference> unresolved = new ArrayList<>();
+		
+		if (!checkReferencesOnInsert) {
+			return unresolved;
+		}
+		
+		for (GedcomCreatorStructureStorage shard : shards) {
+			for (MissingReference reference : shard.commitReferences()) {
+				boolean exists = (reference.isMissingIndividual() 
+						? hasIndividual(reference.getTargetXRef()) 
+						: hasFamily(reference.getTargetXRef()));
+				
+				if (!exists) {
+					unresolved.add(reference);
+				}
+			}
+		}
+		
+		if (throwExceptionOnMissingStructures && !unresolved.isEmpty()) {
+			throw new GedcomCreatorError(unresolved.size() + " references to individuals " + 
+					"or families could not be resolved: " + unresolved);
+		}
+		
+		return unresolved;
+	}
+	
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+	
+	/**
+	 * The reference checks and the metrics of the shard are set through this 
+	 * class, see {@link GedcomShardedStructureStorage}
+	 *
+	 * @param shard
+	 * @return
+	 */
+	public GedcomCreatorStructureStorage getShard(int shard) {
+		return shards[shard];
+	}
+	
+	/**
+	 * The reference checks and the metrics of the shards are set through this 
+	 * class, see {@link GedcomShardedStructureStorage}
+	 *
+	 * @return
+	 */
+	public List<GedcomCreatorStructureStorage> getShards() {
+		return Collections.unmodifiableList(Arrays.asList(shards));
+	}
+	
+	/**
+	 * Returns the index of the shard which holds the individual or family with 
+	 * the given ID
+	 *
+	 * @param id
+	 * @return
+	 */
+	public int shardOf(String id) {
+		return Math.floorMod(id.hashCode(), shards.length);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param id
+	 * @return
+	 */
+	private GedcomCreatorStructureStorage route(String id) {
+		return shards[shardOf(id)];
+	}
+	
+	/**
+	 *
+	 *
+	 * @param individual
+	 * @return <code>false</code> if an individual with the same ID already exists.
+	 */
+	public boolean addIndividual(GedcomIndividual individual) {
+		return addIndividual(individual.getId(), individual);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param individualId
+	 * @param individual
+	 * @return <code>false</code> if an individual with the given ID already exists.
+	 */
+	public boolean addIndividual(String individualId, GedcomIndividual individual) {
+		return route(individualId).addIndividual(individualId, individual);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param family
+	 * @return <code>false</code> if a family with the same ID already exists or 
+	 * if there is already a family with the same husband and wife in the shard.
+	 */
+	public boolean addFamily(GedcomFamily family) {
+		return addFamily(family.getId(), family);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param familyId
+	 * @param family
+	 * @return <code>false</code> if a family with the given ID already exists or 
+	 * if there is already a family with the same husband and wife in the shard.
+	 */
+	public boolean addFamily(String familyId, GedcomFamily family) {
+		return route(familyId).addFamily(familyId, family);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param individualId
+	 * @return
+	 */
+	public GedcomIndividual getIndividual(String individualId) {
+		if (individualId == null) {
+			return null;
+		}
+		
+		return route(individualId).getIndividual(individualId);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param familyId
+	 * @return
+	 */
+	public GedcomFamily getFamily(String familyId) {
+		if (familyId == null) {
+			return null;
+		}
+		
+		return route(familyId).getFamily(familyId);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param individualId
+	 * @return
+	 */
+	public boolean hasIndividual(String individualId) {
+		return getIndividual(individualId) != null;
+	}
+	
+	/**
+	 *
+	 *
+	 * @param familyId
+	 * @return
+	 */
+	public boolean hasFamily(String familyId) {
+		return getFamily(familyId) != null;
+	}
+	
+	/**
+	 *
+	 *
+	 * @param individualId
+	 * @return
+	 */
+	public GedcomIndividual removeIndividual(String individualId) {
+		return route(individualId).removeIndividual(individualId);
+	}
+	
+	/**
+	 *
+	 *
+	 * @param familyId
+	 * @return
+	 */
+	public GedcomFamily removeFamily(String familyId) {
+		return route(familyId).removeFamily(familyId);
+	}
+	
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getIndividualCount() {
+		int count = 0;
+		for (GedcomCreatorStructureStorage shard : shards) {
+			count += shard.getIndividualCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getFamilyCount() {
+		int count = 0;
+		for (GedcomCreatorStructureStorage shard : shards) {
+			count += shard.getFamilyCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Builds the family relations of all the shards which have been modified, 
+	 * in parallel
+	 *
+	 * @return <code>false</code> if building the relations of any shard has 
+	 * been cancelled
+	 */
+	public boolean buildFamilyRelations() {
+		List<BuildTask> tasks = new ArrayList<>(shards.length);
+		for (GedcomCreatorStructureStorage shard : shards) {
+			if (shard.structuresModified()) {
+				tasks.add(new BuildTask(shard));
+			}
+		}
+		
+		if (tasks.isEmpty()) {
+			return true;
+		}
+		
+		boolean built = true;
+		for (BuildTask task : pool.invoke(new BuildAllTask(tasks))) {
+			built &= task.join();
+		}
+		
+		if (built) {
+			metrics.relationIndexSize(getRelationIndexSize());
+		}
+		
+		return built;
+	}
+	
+	/**
+	 * Returns the number of entries in the relation indexes of all the shards
+	 *
+	 * @return
+	 */
+	public int getRelationIndexSize() {
+		int size = 0;
+		for (GedcomCreatorStructureStorage shard : shards) {
+			size += shard.getRelationIndexSize();
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Rebuilds the family relations of a single shard
+	 *
+	 * @param shard
+	 * @return <code>false</code> if the operation has been cancelled
+	 */
+	public boolean buildFamilyRelations(int shard) {
+		return shards[shard].buildFamilyRelations();
+	}
+	
+	/**
+	 * Returns the families where the individual is husband or wife, from all 
+	 * the shards. Builds the family relations of the modified shards first.
+	 *
+	 * @param individualId
+	 * @return
+	 */
+	public Set<GedcomFamily> getFamiliesOfParent(String individualId) {
+		buildFamilyRelations();
+		
+		Set<GedcomFamily> families = new LinkedHashSet<>();
+		for (GedcomCreatorStructureStorage shard : shards) {
+			families.addAll(shard.getFamiliesOfParent(individualId));
+		}
+		
+		return families;
+	}
+	
+	/**
+	 * Returns the children of all the families where the individual is husband 
+	 * or wife. The children are looked up in their own shards. Builds the family 
+	 * relations of the modified shards first.
+	 *
+	 * @param individualId
+	 * @return
+	 */
+	public Set<GedcomIndividual> getChildrenOfIndividual(String individualId) {
+		Set<GedcomIndividual> children = new LinkedHashSet<>();
+		for (GedcomFamily family : getFamiliesOfParent(individualId)) {
+			for (String childLink : family.getChildLinks()) {
+				GedcomIndividual child = getIndividual(childLink);
+				if (child != null) {
+					children.add(child);
+				}
+			}
+		}
+		
+		return children;
+	}
+	
+	/**
+	 * Returns the linked individuals which do not exist in any shard. Builds 
+	 * the family relations of the modified shards first.
+	 *
+	 * @return
+	 * @throws GedcomCreatorError If there are missing individuals and 
+	 * {@link #setThrowExceptionOnMissingStructures(boolean)} is set
+	 */
+	public List<String> getMissingIndividuals() {
+		buildFamilyRelations();
+		
+		Set<String> missing = new HashSet<>();
+		for (GedcomCreatorStructureStorage shard : shards) {
+			for (String individualId : shard.getMissingIndividuals()) {
+				if (!hasIndividual(individualId)) {
+					missing.add(individualId);
+				}
+			}
+		}
+		
+		if (throwExceptionOnMissingStructures && !missing.isEmpty()) {
+			throw new GedcomCreatorError("The individuals " + missing + 
+					" are linked, but could not be found in any shard.");
+		}
+		
+		return new ArrayList<>(missing);
+	}
+	
+	/**
+	 * Returns the linked families which do not exist in any shard. Builds 
+	 * the family relations of the modified shards first.
+	 *
+	 * @return
+	 * @throws GedcomCreatorError If there are missing families and 
+	 * {@link #setThrowExceptionOnMissingStructures(boolean)} is set
+	 */
+	public List<String> getMissingFamilies() {
+		buildFamilyRelations();
+		
+		Set<String> missing = new HashSet<>();
+		for (GedcomCreatorStructureStorage shard : shards) {
+			for (String familyId : shard.getMissingFamilies()) {
+				if (!hasFamily(familyId)) {
+					missing.add(familyId);
+				}
+			}
+		}
+		
+		if (throwExceptionOnMissingStructures && !missing.isEmpty()) {
+			throw new GedcomCreatorError("The families " + missing + 
+					" are linked, but could not be found in any shard.");
+		}
+		
+		return new ArrayList<>(missing);
+	}
+	
+	/**
+	 *
+	 *
+	 */
+	public void clearAll() {
+		for (GedcomCreatorStructureStorage shard : shards) {
+			shard.clearAll();
+		}
+	}
+	
+	
+	/*************************************************************************
+	 *
+	 * Records the operations of a shard, but not its relation index size
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class ShardMetrics implements GedcomMetrics {
+		
+		private final GedcomMetrics metrics;
+		
+		/**
+		 *
+		 *
+		 * @param metrics
+		 */
+		public ShardMetrics(GedcomMetrics metrics) {
+			this.metrics = metrics;
+		}
+		
+		@Override
+		public long start() {
+			return metrics.start();
+		}
+		
+		@Override
+		public void stop(Operation operation, long start) {
+			metrics.stop(operation, start);
+		}
+		
+		@Override
+		public void relationIndexSize(int size) {
+			//Reported for all the shards by the sharded storage
+		}
+	}
+	
+	
+	/*************************************************************************
+	 *
+	 * Builds the family relations of one shard
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class BuildTask extends RecursiveTask<Boolean> {
+		private static final long serialVersionUID = 1L;
+		
+		private GedcomCreatorStructureStorage shard = null;
+		
+		/**
+		 *
+		 *
+		 * @param shard
+		 */
+		public BuildTask(GedcomCreatorStructureStorage shard) {
+			this.shard = shard;
+		}
+		
+		@Override
+		protected Boolean compute() {
+			return shard.buildFamilyRelations();
+		}
+	}
+	
+	
+	/*************************************************************************
+	 *
+	 * Runs the build tasks of all the shards and waits for them
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class BuildAllTask extends RecursiveTask<List<BuildTask>> {
+		private static final long serialVersionUID = 1L;
+		
+		private List<BuildTask> tasks = null;
+		
+		/**
+		 *
+		 *
+		 * @param tasks
+		 */
+		public BuildAllTask(List<BuildTask> tasks) {
+			this.tasks = tasks;
+		}
+		
+		@Override
+		protected List<BuildTask> compute() {
+			invokeAll(tasks);
+			return tasks;
+		}
+	}
+
+}
@@ -0,0 +1,275 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Multimap;
+
+/**
+ * An immutable version of the individuals, families and family relations of 
+ * a {@link GedcomCreatorStructureStorage}, published with 
+ * {@link GedcomCreatorStructureStorage#publishSnapshot()}. Readers can use the 
+ * collections of a snapshot (which records exist under which ID and how they 
+ * are related) from any thread without locking while the storage is modified, 
+ * and they never see partially built relations.<br />
+ * <br />
+ * <b>Note:</b> Only the collections are immutable. The individuals and 
+ * families are the same objects as in the storage, thus changes to their 
+ * lines (including their IDs and links) are visible in all snapshots, and 
+ * the lines may no longer match the relations of an older snapshot. Reading 
+ * the lines of a record while another thread modifies the record is not 
+ * safe: access to the records needs external synchronization, for example 
+ * through the locks of {@link GedcomConcurrentEditor}.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public final class GedcomStorageSnapshot {
+	
+	/** The snapshot of a storage which has not been published yet */
+	public static final GedcomStorageSnapshot EMPTY = new GedcomStorageSnapshot(0, 
+			ImmutableSortedMap.<String, GedcomIndividual>of(), 
+			ImmutableSortedMap.<String, GedcomFamily>of(), 
+			ImmutableSetMultimap.<String, GedcomFamily>of(), 
+			ImmutableSetMultimap.<String, GedcomFamily>of(), 
+			ImmutableSetMultimap.<String, GedcomIndividual>of(), 
+			ImmutableSetMultimap.<String, GedcomIndividual>of(), 
+			ImmutableList.<String>of(), ImmutableList.<String>of());
+	
+	private final long version;
+	
+	private final ImmutableSortedMap<String, GedcomIndividual> individuals;
+	private final ImmutableSortedMap<String, GedcomFamily> families;
+	
+	private final ImmutableSetMultimap<String, GedcomFamily> familiesOfParent;
+	private final ImmutableSetMultimap<String, GedcomFamily> familiesOfChild;
+	private final ImmutableSetMultimap<String, GedcomIndividual> partnersOfIndividual;
+	private final ImmutableSetMultimap<String, GedcomIndividual> childrenOfIndividual;
+	
+	private final ImmutableList<String> missingIndividuals;
+	private final ImmutableList<String> missingFamilies;
+	
+	/**
+	 * 
+	 * 
+	 * @param version
+	 * @param individuals
+	 * @param families
+	 * @param familiesOfParent
+	 * @param familiesOfChild
+	 * @param partnersOfIndividual
+	 * @param childrenOfIndividual
+	 * @param missingIndividuals
+	 * @param missingFamilies
+	 */
+	private GedcomStorageSnapshot(long version, 
+			ImmutableSortedMap<String, GedcomIndividual> individuals, 
+			ImmutableSortedMap<String, GedcomFamily> families, 
+			ImmutableSetMultimap<String, GedcomFamily> familiesOfParent, 
+			ImmutableSetMultimap<String, GedcomFamily> familiesOfChild, 
+			ImmutableSetMultimap<String, GedcomIndividual> partnersOfIndividual, 
+			ImmutableSetMultimap<String, GedcomIndividual> childrenOfIndividual, 
+			ImmutableList<String> missingIndividuals, 
+			ImmutableList<String> missingFamilies) {
+		this.version = version;
+		this.individuals = individuals;
+		this.families = families;
+		this.familiesOfParent = familiesOfParent;
+		this.familiesOfChild = familiesOfChild;
+		this.partnersOfIndividual = partnersOfIndividual;
+		this.childrenOfIndividual = childrenOfIndividual;
+		this.missingIndividuals = missingIndividuals;
+		this.missingFamilies = missingFamilies;
+	}
+	
+	/**
+	 * Copies the given collections. The relations have to be built already.
+	 * 
+	 * @param version
+	 * @param individuals
+	 * @param families
+	 * @param familiesOfParent
+	 * @param familiesOfChild
+	 * @param partnersOfIndividual
+	 * @param childrenOfIndividual
+	 * @param missingIndividuals
+	 * @param missingFamilies
+	 * @return
+	 */
+	protected static GedcomStorageSnapshot copyOf(long version, 
+			SortedMap<String, GedcomIndividual> individuals, 
+			SortedMap<String, GedcomFamily> families, 
+			Multimap<String, GedcomFamily> familiesOfParent, 
+			Multimap<String, GedcomFamily> familiesOfChild, 
+			Multimap<String, GedcomIndividual> partnersOfIndividual, 
+			Multimap<String, GedcomIndividual> childrenOfIndividual, 
+			List<String> missingIndividuals, 
+			List<String> missingFamilies) {
+		return new GedcomStorageSnapshot(version, 
+				ImmutableSortedMap.copyOfSorted(individuals), 
+				ImmutableSortedMap.copyOfSorted(families), 
+				copyOf(familiesOfParent), 
+				copyOf(familiesOfChild), 
+				copyOf(partnersOfIndividual), 
+				copyOf(childrenOfIndividual), 
+				ImmutableList.copyOf(missingIndividuals), 
+				ImmutableList.copyOf(missingFamilies));
+	}
+	
+	/**
+	 * Copies the multimap without the <code>null</code> keys and values 
+	 * (a family without husband or wife is listed with a <code>null</code> parent)
+	 * 
+	 * @param multimap
+	 * @return
+	 */
+	private static <V> ImmutableSetMultimap<String, V> copyOf(Multimap<String, V> multimap) {
+		ImmutableSetMultimap.Builder<String, V> builder = ImmutableSetMultimap.builder();
+		
+		for (Map.Entry<String, V> entry : multimap.entries()) {
+			if (entry.getKey() != null && entry.getValue() != null) {
+				builder.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		return builder.build();
+	}
+	
+	/**
+	 * The version increases with each published snapshot of a storage
+	 * 
+	 * @return
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns the individual which had the given ID when the snapshot was 
+	 * published. See the class description for access to the returned record.
+	 * 
+	 * @param individualId
+	 * @return
+	 */
+	public GedcomIndividual getIndividual(String individualId) {
+		return individualId == null ? null : individuals.get(individualId);
+	}
+	
+	/**
+	 * Returns the family which had the given ID when the snapshot was 
+	 * published. See the class description for access to the returned record.
+	 * 
+	 * @param familyId
+	 * @return
+	 */
+	public GedcomFamily getFamily(String familyId) {
+		return familyId == null ? null : families.get(familyId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public ImmutableSortedMap<String, GedcomIndividual> getIndividuals() {
+		return individuals;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public ImmutableSortedMap<String, GedcomFamily> getFamilies() {
+		return families;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param individualId
+	 * @return
+	 */
+	public ImmutableSet<GedcomFamily> getFamiliesOfParent(String individualId) {
+		return familiesOfParent.get(individualId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param individualId
+	 * @return
+	 */
+	public ImmutableSet<GedcomFamily> getFamiliesOfChild(String individualId) {
+		return familiesOfChild.get(individualId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param individualId
+	 * @return
+	 */
+	public ImmutableSet<GedcomIndividual> getPartnersOfIndividual(String individualId) {
+		return partnersOfIndividual.get(individualId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param individualId
+	 * @return
+	 */
+	public ImmutableSet<GedcomIndividual> getChildrenOfIndividual(String individualId) {
+		return childrenOfIndividual.get(individualId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public ImmutableList<String> getMissingIndividuals() {
+		return missingIndividuals;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public ImmutableList<String> getMissingFamilies() {
+		return missingFamilies;
+	}
+	
+	@Override
+	public String toString() {
+		return "Version " + version + ": " + individuals.size() + " individuals, " + 
+				families.size() + " families";
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import ch.thn.gedcom.data.GedcomTree;
+import ch.thn.gedcom.store.GedcomStore;
+
+/**
+ * Wraps a parsed {@link GedcomStore} for creating the structures. The values 
+ * which the structures would otherwise read from the store each time a 
+ * structure is created (like the file version) are read once when the wrapper 
+ * is created, thus it should be created after the grammar has been parsed.<br />
+ * <br />
+ * This is not a copy of the store: the trees are still created by the 
+ * wrapped store, and the store is not guaranteed to be thread safe. Threads 
+ * which create structures from the same store concurrently have to 
+ * synchronize the calls (like {@link GedcomCreatorService} does). The 
+ * underlying store must not be parsed again while the wrapper is in use.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public final class GedcomStoreContext {
+	
+	private final GedcomStore store;
+	private final String fileVersion;
+	private final boolean v55;
+	
+	/**
+	 * 
+	 * 
+	 * @param store A store with a parsed grammar
+	 */
+	public GedcomStoreContext(GedcomStore store) {
+		this.store = store;
+		this.fileVersion = store.getFileVersion();
+		this.v55 = "5.5".equals(fileVersion);
+	}
+	
+	/**
+	 * Creates a new tree for the given structure
+	 * 
+	 * @param structureName
+	 * @return
+	 */
+	public GedcomTree getGedcomTree(String structureName) {
+		return store.getGedcomTree(structureName);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public String getFileVersion() {
+		return fileVersion;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the grammar is version 5.5
+	 * 
+	 * @return
+	 */
+	public boolean isV55() {
+		return v55;
+	}
+
+}
@@ -0,0 +1,186 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.thn.gedcom.creator.structures.GedcomXRefMapper;
+
+/**
+ * A table of old and new XRefs of individuals and families. Individuals and 
+ * families have separate tables, since an individual and a family can have 
+ * the same XRef.<br />
+ * <br />
+ * The XRefs of the tags INDI, HUSB, WIFE, CHIL, ALIA and ASSO are looked up in 
+ * the individual table, the XRefs of the tags FAM, FAMS and FAMC in the family 
+ * table. All other XRefs are not changed.<br />
+ * <br />
+ * The remapping is not thread safe while it is modified, but it can be used 
+ * by several threads at the same time once it is filled.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomXRefRemapping implements GedcomXRefMapper {
+	
+	private HashMap<String, String> individuals = null;
+	private HashMap<String, String> families = null;
+	
+	/**
+	 * 
+	 */
+	public GedcomXRefRemapping() {
+		individuals = new HashMap<>();
+		families = new HashMap<>();
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param oldId
+	 * @param newId
+	 */
+	public void putIndividual(String oldId, String newId) {
+		individuals.put(oldId, newId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param oldId
+	 * @param newId
+	 */
+	public void putFamily(String oldId, String newId) {
+		families.put(oldId, newId);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param oldId
+	 * @return The new ID, or the given ID if it is not remapped
+	 */
+	public String getIndividualId(String oldId) {
+		String newId = individuals.get(oldId);
+		return newId == null ? oldId : newId;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param oldId
+	 * @return The new ID, or the given ID if it is not remapped
+	 */
+	public String getFamilyId(String oldId) {
+		String newId = families.get(oldId);
+		return newId == null ? oldId : newId;
+	}
+	
+	/**
+	 * Returns an unmodifiable view on the remapped individual IDs (old ID -> new ID)
+	 * 
+	 * @return
+	 */
+	public Map<String, String> getIndividuals() {
+		return Collections.unmodifiableMap(individuals);
+	}
+	
+	/**
+	 * Returns an unmodifiable view on the remapped family IDs (old ID -> new ID)
+	 * 
+	 * @return
+	 */
+	public Map<String, String> getFamilies() {
+		return Collections.unmodifiableMap(families);
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return individuals.isEmpty() && families.isEmpty();
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return individuals.size() + families.size();
+	}
+	
+	@Override
+	public String map(String tag, String xref) {
+		if (isIndividualXRef(tag)) {
+			return individuals.get(xref);
+		} else if (isFamilyXRef(tag)) {
+			return families.get(xref);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the XRef of a line with the given tag is 
+	 * the ID of an individual
+	 * 
+	 * @param tag
+	 * @return
+	 */
+	protected static boolean isIndividualXRef(String tag) {
+		switch (tag) {
+		case "INDI":
+		case "HUSB":
+		case "WIFE":
+		case "CHIL":
+		case "ALIA":
+		case "ASSO":
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if the XRef of a line with the given tag is 
+	 * the ID of a family
+	 * 
+	 * @param tag
+	 * @return
+	 */
+	protected static boolean isFamilyXRef(String tag) {
+		switch (tag) {
+		case "FAM":
+		case "FAMS":
+		case "FAMC":
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "individuals=" + individuals + ", families=" + families;
+	}
+
+}
@@ -0,0 +1,375 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ch.thn.gedcom.creator.GedcomCreatorError;
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+/**
+ * Splits the individuals and families of a {@link GedcomCreatorStructureStorage} 
+ * into the groups of records which are connected through links (the separate 
+ * family trees of the storage).<br />
+ * <br />
+ * Only the XRef links of the records are used, the family relations of the 
+ * storage do not have to be built. The links are read in parallel and the 
+ * groups are then joined with a union-find over the record indexes. A link 
+ * which only exists on one side still connects the two records. Links to 
+ * records which do not exist are ignored.<br />
+ * <br />
+ * The storage must not be modified during a pass.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class ComponentPartitioner {
+
+	/** The number of records below which a task is not split any further */
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	private GedcomCreatorStructureStorage storage = null;
+	private ForkJoinPool pool = null;
+
+	/**
+	 * A partitioner which uses the common fork join pool
+	 *
+	 * @param storage
+	 */
+	public ComponentPartitioner(GedcomCreatorStructureStorage storage) {
+		this(storage, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 *
+	 *
+	 * @param storage
+	 * @param pool
+	 */
+	public ComponentPartitioner(GedcomCreatorStructureStorage storage, ForkJoinPool pool) {
+		this.storage = storage;
+		this.pool = pool;
+	}
+
+	/**
+	 * Finds the connected groups of records
+	 *
+	 * @return The components, largest first
+	 */
+	public List<FamilyTreeComponent> findComponents() {
+		Map<String, GedcomIndividual> individuals = storage.getIndividuals();
+		Map<String, GedcomFamily> families = storage.getFamilies();
+
+		int individualCount = individuals.size();
+		int count = individualCount + families.size();
+
+		String[] ids = new String[count];
+		AbstractGedcomStructure[] records = new AbstractGedcomStructure[count];
+		Map<String, Integer> individualIndex = new HashMap<>(individualCount * 2);
+		Map<String, Integer> familyIndex = new HashMap<>(families.size() * 2);
+
+		int i = 0;
+		for (Map.Entry<String, GedcomIndividual> entry : individuals.entrySet()) {
+			individualIndex.put(entry.getKey(), i);
+			ids[i] = entry.getKey();
+			records[i++] = entry.getValue();
+		}
+
+		for (Map.Entry<String, GedcomFamily> entry : families.entrySet()) {
+			familyIndex.put(entry.getKey(), i);
+			ids[i] = entry.getKey();
+			records[i++] = entry.getValue();
+		}
+
+		int[][] links = new int[count][];
+		pool.invoke(new LinkTask(records, individualIndex, familyIndex, links, 0, count));
+
+		//Union-find with union by size and path halving
+		int[] parents = new int[count];
+		int[] sizes = new int[count];
+		for (i = 0; i < count; i++) {
+			parents[i] = i;
+			sizes[i] = 1;
+		}
+
+		for (i = 0; i < count; i++) {
+			for (int link : links[i]) {
+				int root1 = find(parents, i);
+				int root2 = find(parents, link);
+
+				if (root1 != root2) {
+					if (sizes[root1] < sizes[root2]) {
+						int swap = root1;
+						root1 = root2;
+						root2 = swap;
+					}
+
+					parents[root2] = root1;
+					sizes[root1] += sizes[root2];
+				}
+			}
+		}
+
+		//Collect the IDs by root. The IDs are added in sorted order.
+		int[] componentOfRoot = new int[count];
+		Arrays.fill(componentOfRoot, -1);
+		List<List<String>> individualIds = new ArrayList<>();
+		List<List<String>> familyIds = new ArrayList<>();
+
+		for (i = 0; i < count; i++) {
+			int root = find(parents, i);
+			int component = componentOfRoot[root];
+
+			if (component < 0) {
+				component = individualIds.size();
+				componentOfRoot[root] = component;
+				individualIds.add(new ArrayList<String>());
+				familyIds.add(new ArrayList<String>());
+			}
+
+			if (i < individualCount) {
+				individualIds.get(component).add(ids[i]);
+			} else {
+				familyIds.get(component).add(ids[i]);
+			}
+		}
+
+		List<FamilyTreeComponent> components = new ArrayList<>(individualIds.size());
+		for (int c = 0; c < individualIds.size(); c++) {
+			components.add(new FamilyTreeComponent(individualIds.get(c), familyIds.get(c)));
+		}
+
+		Collections.sort(components);
+
+		return components;
+	}
+
+	/**
+	 * Creates a storage for each component, in parallel. The storages contain 
+	 * the same individual and family objects as the partitioned storage (the 
+	 * structures are not copied), and they share its ID allocator so that new 
+	 * IDs stay unique across all the storages. Headers, submitters and EOFs 
+	 * are not copied.
+	 *
+	 * @return The storages, largest component first
+	 */
+	public List<GedcomCreatorStructureStorage> partition() {
+		List<FamilyTreeComponent> components = findComponents();
+		GedcomCreatorStructureStorage[] storages = new GedcomCreatorStructureStorage[components.size()];
+
+		pool.invoke(new PartitionTask(components, storages, 0, storages.length));
+
+		return Arrays.asList(storages);
+	}
+
+	/**
+	 *
+	 *
+	 * @param parents
+	 * @param index
+	 * @return The root of the index
+	 */
+	private static int find(int[] parents, int index) {
+		while (parents[index] != index) {
+			parents[index] = parents[parents[index]];
+			index = parents[index];
+		}
+
+		return index;
+	}
+
+	/**
+	 * Adds the index of the record with the given ID to the links if it exists
+	 *
+	 * @param index
+	 * @param id
+	 * @param links
+	 * @param size
+	 * @return The new size of the links
+	 */
+	private static int addLink(Map<String, Integer> index, String id, int[] links, int size) {
+		Integer link = (id == null ? null : index.get(id));
+
+		if (link != null) {
+			links[size++] = link;
+		}
+
+		return size;
+	}
+
+
+	/*************************************************************************
+	 *
+	 * Reads the links of a range of records
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class LinkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private AbstractGedcomStructure[] records = null;
+		private Map<String, Integer> individualIndex = null;
+		private Map<String, Integer> familyIndex = null;
+		private int[][] links = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param records
+		 * @param individualIndex
+		 * @param familyIndex
+		 * @param links
+		 * @param from
+		 * @param to
+		 */
+		public LinkTask(AbstractGedcomStructure[] records, Map<String, Integer> individualIndex, 
+				Map<String, Integer> familyIndex, int[][] links, int from, int to) {
+			this.records = records;
+			this.individualIndex = individualIndex;
+			this.familyIndex = familyIndex;
+			this.links = links;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new LinkTask(records, individualIndex, familyIndex, links, from, middle), 
+						new LinkTask(records, individualIndex, familyIndex, links, middle, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				int[] recordLinks = null;
+				int size = 0;
+
+				if (records[i] instanceof GedcomIndividual) {
+					GedcomIndividual individual = (GedcomIndividual)records[i];
+					List<String> spouseFamilyLinks = individual.getSpouseFamilyLinks();
+					List<String> childFamilyLinks = individual.getChildFamilyLinks();
+
+					recordLinks = new int[spouseFamilyLinks.size() + childFamilyLinks.size()];
+					for (String link : spouseFamilyLinks) {
+						size = addLink(familyIndex, link, recordLinks, size);
+					}
+
+					for (String link : childFamilyLinks) {
+						size = addLink(familyIndex, link, recordLinks, size);
+					}
+				} else {
+					GedcomFamily family = (GedcomFamily)records[i];
+					List<String> childLinks = family.getChildLinks();
+
+					recordLinks = new int[childLinks.size() + 2];
+					size = addLink(individualIndex, family.getHusbandLink(), recordLinks, size);
+					size = addLink(individualIndex, family.getWifeLink(), recordLinks, size);
+					for (String link : childLinks) {
+						size = addLink(individualIndex, link, recordLinks, size);
+					}
+				}
+
+				links[i] = (size == recordLinks.length ? recordLinks : Arrays.copyOf(recordLinks, size));
+			}
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * Creates the storages of a range of components. Each structure belongs 
+	 * to exactly one component, thus it is only read by one thread.
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class PartitionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private List<FamilyTreeComponent> components = null;
+		private GedcomCreatorStructureStorage[] storages = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param components
+		 * @param storages
+		 * @param from
+		 * @param to
+		 */
+		public PartitionTask(List<FamilyTreeComponent> components, 
+				GedcomCreatorStructureStorage[] storages, int from, int to) {
+			this.components = components;
+			this.storages = storages;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int records = 0;
+			for (int i = from; i < to && records <= PARALLEL_THRESHOLD; i++) {
+				records += components.get(i).size();
+			}
+
+			if (to - from > 1 && records > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new PartitionTask(components, storages, from, middle), 
+						new PartitionTask(components, storages, middle, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				FamilyTreeComponent component = components.get(i);
+				GedcomCreatorStructureStorage partition = new GedcomCreatorStructureStorage();
+				partition.setIdAllocator(storage.getIdAllocator());
+
+				for (String individualId : component.getIndividualIds()) {
+					partition.addIndividual(individualId, storage.getIndividual(individualId));
+				}
+
+				for (String familyId : component.getFamilyIds()) {
+					//Copy all the families, also the ones without parents or 
+					//with the same parents as another family
+					if (!partition.addFamily(familyId, storage.getFamily(familyId), false)) {
+						throw new GedcomCreatorError("The family " + familyId + 
+								" could not be added to its partition");
+					}
+				}
+
+				storages[i] = partition;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+/**
+ * Two individuals which might be the same person, with a score between 0
+ * (certainly different) and 1 (very likely the same person).
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class DuplicateCandidate implements Comparable<DuplicateCandidate> {
+
+	private String individualId1 = null;
+	private String individualId2 = null;
+	private double score = 0;
+
+	/**
+	 *
+	 *
+	 * @param individualId1
+	 * @param individualId2
+	 * @param score
+	 */
+	public DuplicateCandidate(String individualId1, String individualId2, double score) {
+		this.individualId1 = individualId1;
+		this.individualId2 = individualId2;
+		this.score = score;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getIndividualId1() {
+		return individualId1;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getIndividualId2() {
+		return individualId2;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Orders the candidates by descending score
+	 */
+	@Override
+	public int compareTo(DuplicateCandidate o) {
+		int c = Double.compare(o.score, score);
+
+		if (c != 0) {
+			return c;
+		}
+
+		c = individualId1.compareTo(o.individualId1);
+
+		if (c != 0) {
+			return c;
+		}
+
+		return individualId2.compareTo(o.individualId2);
+	}
+
+	@Override
+	public String toString() {
+		return individualId1 + "/" + individualId2 + ": " + score;
+	}
+
+}
@@ -0,0 +1,790 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomDate;
+import ch.thn.gedcom.creator.GedcomEnums.Sex;
+import ch.thn.gedcom.creator.index.PhoneticEncoder;
+import ch.thn.gedcom.creator.index.SoundexEncoder;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+/**
+ * Finds individuals in a {@link GedcomCreatorStructureStorage} which might be
+ * the same person.<br />
+ * <br />
+ * To avoid comparing every individual with every other individual, the
+ * individuals are grouped into blocks by the phonetic code of their surnames
+ * and their birth year (in buckets of {@link #setYearBucketSize(int)} years).
+ * Only the individuals within a block and the neighbouring year bucket of the
+ * same surname code are compared. Individuals without birth year are compared
+ * with all the individuals of the same surname code. Individuals without a
+ * surname (or with a surname which the encoder does not encode) are blocked
+ * the same way by the phonetic codes of their given names, and only compared
+ * with each other. Individuals without any name are not compared, they are
+ * reported through {@link #getSkippedBlocks()}. Blocks which are larger
+ * than {@link #setMaximumBlockSize(int)} (common surnames) are split further
+ * by the phonetic codes of the given names. Blocks which are still too large
+ * are skipped and reported through {@link #getSkippedBlocks()}.<br />
+ * <br />
+ * The pairs are scored in parallel on the names, birth and death dates and sex.
+ * A shared spouse family counts towards a match, a shared child family (which
+ * siblings have) counts against it.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class DuplicateFinder {
+
+	/** The bucket used for individuals without a birth year */
+	private static final int NO_YEAR = Integer.MIN_VALUE;
+
+	private static final double SURNAME_WEIGHT = 0.25;
+	private static final double GIVEN_NAME_WEIGHT = 0.3;
+	private static final double BIRTH_WEIGHT = 0.2;
+	private static final double DEATH_WEIGHT = 0.1;
+	private static final double FAMILY_WEIGHT = 0.15;
+
+	/** The score factor for individuals which are children of the same family */
+	private static final double SIBLING_FACTOR = 0.5;
+
+	/** The given name key of the individuals without given name */
+	private static final String NO_GIVEN_NAME = "";
+
+	/** The surname score of a pair where a surname is unknown */
+	private static final double UNKNOWN_SURNAME = 0.5;
+
+	/** The date difference in days at which the date score drops to 0 */
+	private static final double DATE_TOLERANCE = 5 * 365;
+
+	/** The number of comparisons below which a task is not split any further */
+	private static final int PARALLEL_THRESHOLD = 4096;
+
+	private GedcomCreatorStructureStorage storage = null;
+	private PhoneticEncoder encoder = null;
+	private ForkJoinPool pool = null;
+
+	private int yearBucketSize = 5;
+	private int maximumBlockSize = 2000;
+	private double minimumScore = 0.6;
+
+	/** The blocks which have been skipped by the last search */
+	private List<String> skippedBlocks = Collections.emptyList();
+
+	/**
+	 * A finder which uses the soundex encoding and the common fork join pool
+	 *
+	 * @param storage
+	 */
+	public DuplicateFinder(GedcomCreatorStructureStorage storage) {
+		this(storage, new SoundexEncoder(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 *
+	 *
+	 * @param storage
+	 * @param encoder The encoder used for blocking and comparing names
+	 * @param pool
+	 */
+	public DuplicateFinder(GedcomCreatorStructureStorage storage,
+			PhoneticEncoder encoder, ForkJoinPool pool) {
+		this.storage = storage;
+		this.encoder = encoder;
+		this.pool = pool;
+	}
+
+	/**
+	 * The number of birth years which are grouped into one block. Default is 5.
+	 *
+	 * @param yearBucketSize
+	 */
+	public void setYearBucketSize(int yearBucketSize) {
+		if (yearBucketSize < 1) {
+			throw new IllegalArgumentException("The year bucket size has to be at least 1");
+		}
+
+		this.yearBucketSize = yearBucketSize;
+	}
+
+	/**
+	 * Blocks with more individuals are split by the given names, and skipped
+	 * if they are still too large. Default is 2000.
+	 *
+	 * @param maximumBlockSize
+	 */
+	public void setMaximumBlockSize(int maximumBlockSize) {
+		this.maximumBlockSize = maximumBlockSize;
+	}
+
+	/**
+	 * Only pairs with at least this score are returned. Default is 0.6.
+	 *
+	 * @param minimumScore
+	 */
+	public void setMinimumScore(double minimumScore) {
+		this.minimumScore = minimumScore;
+	}
+
+	/**
+	 * Returns a description of each block which has not been compared by the
+	 * last call to {@link #findDuplicates()}, because it was larger than the
+	 * maximum block size even after splitting it by the given names, and of
+	 * the individuals without any name.
+	 *
+	 * @return
+	 */
+	public List<String> getSkippedBlocks() {
+		return skippedBlocks;
+	}
+
+	/**
+	 * Searches the storage for duplicates.
+	 *
+	 * @return The duplicate candidates, ordered by descending score
+	 */
+	public List<DuplicateCandidate> findDuplicates() {
+		Profile[] profiles = createProfiles();
+		List<String> skipped = new ArrayList<>();
+
+		//block name (surname code, or given name code without surname) -> year bucket -> profiles
+		Map<String, TreeMap<Integer, List<Profile>>> blocks = new HashMap<>();
+		int unnamed = 0;
+
+		for (Profile profile : profiles) {
+			int bucket = profile.birthYear == NO_YEAR ? NO_YEAR : Math.floorDiv(profile.birthYear, yearBucketSize);
+
+			if (!profile.surnameCodes.isEmpty()) {
+				for (String code : profile.surnameCodes) {
+					addToBlock(blocks, "surname " + code, bucket, profile);
+				}
+			} else if (!profile.givenNameCodes.isEmpty()) {
+				for (String code : profile.givenNameCodes) {
+					addToBlock(blocks, "no surname, given name " + code, bucket, profile);
+				}
+			} else {
+				unnamed++;
+			}
+		}
+
+		if (unnamed > 0) {
+			skipped.add("no name: " + unnamed + " individuals");
+		}
+
+		//Collect all the pairs of blocks which have to be compared
+		List<BlockPair> blockPairs = new ArrayList<>();
+
+		for (Map.Entry<String, TreeMap<Integer, List<Profile>>> nameBlock : blocks.entrySet()) {
+			String blockName = nameBlock.getKey();
+			TreeMap<Integer, List<Profile>> buckets = nameBlock.getValue();
+			List<Profile> noYear = buckets.get(NO_YEAR);
+
+			for (Map.Entry<Integer, List<Profile>> entry : buckets.entrySet()) {
+				List<Profile> block = entry.getValue();
+				String name = describe(blockName, entry.getKey());
+
+				//Within the block
+				addBlockPairs(blockPairs, skipped, block, null, name);
+
+				if (entry.getKey() == NO_YEAR) {
+					continue;
+				}
+
+				//With the next year bucket
+				List<Profile> next = buckets.get(entry.getKey() + 1);
+				if (next != null) {
+					addBlockPairs(blockPairs, skipped, block, next, 
+							name + " with " + describe(blockName, entry.getKey() + 1));
+				}
+
+				//With the individuals without birth year
+				if (noYear != null) {
+					addBlockPairs(blockPairs, skipped, block, noYear, 
+							name + " with " + describe(blockName, NO_YEAR));
+				}
+			}
+		}
+
+		skippedBlocks = Collections.unmodifiableList(skipped);
+
+		List<DuplicateCandidate> candidates = pool.invoke(
+				new ScoreTask(blockPairs.toArray(new BlockPair[blockPairs.size()]), 0, blockPairs.size()));
+
+		//The same pair can be found in more than one block if the individuals
+		//share more than one surname code
+		Map<String, DuplicateCandidate> unique = new HashMap<>();
+		for (DuplicateCandidate candidate : candidates) {
+			unique.put(candidate.getIndividualId1() + "\u0000" + candidate.getIndividualId2(), candidate);
+		}
+
+		List<DuplicateCandidate> result = new ArrayList<>(unique.values());
+		Collections.sort(result);
+
+		return result;
+	}
+
+	/**
+	 * Adds the pair of blocks, or the pairs of their given name sub-blocks if
+	 * one of the blocks is larger than the maximum block size
+	 *
+	 * @param blockPairs
+	 * @param skipped
+	 * @param block1
+	 * @param block2 <code>null</code> to compare the individuals within block1
+	 * @param name The description of the blocks, for the skipped blocks
+	 */
+	private void addBlockPairs(List<BlockPair> blockPairs, List<String> skipped, 
+			List<Profile> block1, List<Profile> block2, String name) {
+		if (block1.size() <= maximumBlockSize 
+				&& (block2 == null || block2.size() <= maximumBlockSize)) {
+			addBlockPair(blockPairs, block1, block2);
+			return;
+		}
+
+		Map<String, List<Profile>> subBlocks1 = splitByGivenName(block1);
+		Map<String, List<Profile>> subBlocks2 = (block2 == null ? null : splitByGivenName(block2));
+
+		for (Map.Entry<String, List<Profile>> entry : subBlocks1.entrySet()) {
+			List<Profile> subBlock1 = entry.getValue();
+			List<Profile> subBlock2 = null;
+
+			if (subBlocks2 != null) {
+				subBlock2 = subBlocks2.get(entry.getKey());
+
+				if (subBlock2 == null) {
+					continue;
+				}
+			}
+
+			if (subBlock1.size() > maximumBlockSize 
+					|| (subBlock2 != null && subBlock2.size() > maximumBlockSize)) {
+				skipped.add(name + ", given name " 
+						+ (NO_GIVEN_NAME.equals(entry.getKey()) ? "unknown" : entry.getKey()) 
+						+ ": " + subBlock1.size() 
+						+ (subBlock2 == null ? "" : " x " + subBlock2.size()) + " individuals");
+				continue;
+			}
+
+			addBlockPair(blockPairs, subBlock1, subBlock2);
+		}
+	}
+
+	/**
+	 * Splits the block by the phonetic codes of the given names. An individual
+	 * with more than one given name code is in more than one sub-block.
+	 *
+	 * @param block
+	 * @return
+	 */
+	private static Map<String, List<Profile>> splitByGivenName(List<Profile> block) {
+		Map<String, List<Profile>> subBlocks = new HashMap<>();
+
+		for (Profile profile : block) {
+			if (profile.givenNameCodes.isEmpty()) {
+				addToBlock(subBlocks, NO_GIVEN_NAME, profile);
+			} else {
+				for (String code : profile.givenNameCodes) {
+					addToBlock(subBlocks, code, profile);
+				}
+			}
+		}
+
+		return subBlocks;
+	}
+
+	/**
+	 *
+	 *
+	 * @param blocks
+	 * @param key
+	 * @param profile
+	 */
+	private static void addToBlock(Map<String, List<Profile>> blocks, String key, Profile profile) {
+		List<Profile> block = blocks.get(key);
+
+		if (block == null) {
+			block = new ArrayList<>();
+			blocks.put(key, block);
+		}
+
+		block.add(profile);
+	}
+
+	/**
+	 *
+	 *
+	 * @param blocks
+	 * @param name
+	 * @param bucket
+	 * @param profile
+	 */
+	private static void addToBlock(Map<String, TreeMap<Integer, List<Profile>>> blocks, 
+			String name, int bucket, Profile profile) {
+		TreeMap<Integer, List<Profile>> buckets = blocks.get(name);
+
+		if (buckets == null) {
+			buckets = new TreeMap<>();
+			blocks.put(name, buckets);
+		}
+
+		List<Profile> block = buckets.get(bucket);
+
+		if (block == null) {
+			block = new ArrayList<>();
+			buckets.put(bucket, block);
+		}
+
+		block.add(profile);
+	}
+
+	/**
+	 *
+	 *
+	 * @param blockName
+	 * @param bucket
+	 * @return
+	 */
+	private String describe(String blockName, int bucket) {
+		if (bucket == NO_YEAR) {
+			return blockName + ", no birth year";
+		}
+
+		return blockName + ", born " + (bucket * yearBucketSize) 
+				+ "-" + (bucket * yearBucketSize + yearBucketSize - 1);
+	}
+
+	/**
+	 *
+	 *
+	 * @param blockPairs
+	 * @param block1
+	 * @param block2 <code>null</code> to compare the individuals within block1
+	 */
+	private static void addBlockPair(List<BlockPair> blockPairs, List<Profile> block1, List<Profile> block2) {
+		if (block2 == null && block1.size() < 2) {
+			return;
+		}
+
+		blockPairs.add(new BlockPair(block1, block2));
+	}
+
+	/**
+	 * Collects the information needed for the comparison from all individuals.
+	 * Reading the individuals is done in parallel.
+	 *
+	 * @return
+	 */
+	private Profile[] createProfiles() {
+		final GedcomIndividual[] individuals = storage.getIndividuals().values().toArray(
+				new GedcomIndividual[storage.getIndividualCount()]);
+		final String[] ids = storage.getIndividuals().keySet().toArray(
+				new String[storage.getIndividualCount()]);
+		final Profile[] profiles = new Profile[individuals.length];
+
+		pool.invoke(new ProfileTask(individuals, ids, profiles, 0, individuals.length));
+
+		return profiles;
+	}
+
+	/**
+	 *
+	 *
+	 * @param id
+	 * @param individual
+	 * @return
+	 */
+	private Profile createProfile(String id, GedcomIndividual individual) {
+		Profile profile = new Profile();
+		profile.id = id;
+
+		int count = individual.getNumberOfNames();
+		for (int i = 0; i < count; i++) {
+			String surname = normalize(individual.getSurname(i));
+
+			if (surname != null) {
+				profile.surnames.add(surname);
+				encoder.encode(surname, profile.surnameCodes);
+			}
+
+			String given = individual.getGivenName(i);
+			if (given != null) {
+				for (String part : given.split("[,\\s]+")) {
+					part = normalize(part);
+
+					if (part != null) {
+						profile.givenNames.add(part);
+						encoder.encode(part, profile.givenNameCodes);
+					}
+				}
+			}
+		}
+
+		profile.birth = individual.getParsedBirthDate();
+		profile.death = individual.getParsedDeathDate();
+
+		if (profile.birth != null && profile.birth.isParsed()) {
+			profile.birthYear = profile.birth.getYear();
+		}
+
+		profile.sex = individual.getSex();
+
+		profile.spouseFamilies.addAll(individual.getSpouseFamilyLinks());
+		profile.spouseFamilies.remove(null);
+		profile.childFamilies.addAll(individual.getChildFamilyLinks());
+		profile.childFamilies.remove(null);
+
+		return profile;
+	}
+
+	/**
+	 * Calculates the score of the pair
+	 *
+	 * @param p1
+	 * @param p2
+	 * @return
+	 */
+	private static double score(Profile p1, Profile p2) {
+		double surname = 0;
+		if (intersects(p1.surnames, p2.surnames)) {
+			surname = 1;
+		} else if (intersects(p1.surnameCodes, p2.surnameCodes)) {
+			//The surnames sound alike
+			surname = 0.8;
+		} else if (p1.surnames.isEmpty() || p2.surnames.isEmpty()) {
+			surname = UNKNOWN_SURNAME;
+		}
+
+		double given = Math.max(jaccard(p1.givenNames, p2.givenNames),
+				0.8 * jaccard(p1.givenNameCodes, p2.givenNameCodes));
+
+		//The same spouse family: most likely the same person entered twice
+		boolean spouses = intersects(p1.spouseFamilies, p2.spouseFamilies);
+		double family = spouses ? 1 : 0;
+
+		double score = SURNAME_WEIGHT * surname
+				+ GIVEN_NAME_WEIGHT * given
+				+ BIRTH_WEIGHT * dateScore(p1.birth, p2.birth)
+				+ DEATH_WEIGHT * dateScore(p1.death, p2.death)
+				+ FAMILY_WEIGHT * family;
+
+		if (p1.sex != Sex.UNKNOWN && p2.sex != Sex.UNKNOWN && p1.sex != p2.sex) {
+			score *= 0.5;
+		}
+
+		//Children of the same family with similar names are usually siblings
+		if (!spouses && intersects(p1.childFamilies, p2.childFamilies)) {
+			score *= SIBLING_FACTOR;
+		}
+
+		return score;
+	}
+
+	/**
+	 *
+	 *
+	 * @param d1
+	 * @param d2
+	 * @return 1 for the same date, 0 for dates which are far apart and 0.5
+	 * if one of the dates is unknown
+	 */
+	private static double dateScore(GedcomDate d1, GedcomDate d2) {
+		if (d1 == null || d2 == null || !d1.isParsed() || !d2.isParsed()) {
+			return 0.5;
+		}
+
+		if (d1.overlaps(d2.getEarliestDay(), d2.getLatestDay() == GedcomDate.UNKNOWN_DAY
+				? Integer.MAX_VALUE : d2.getLatestDay())) {
+			return 1;
+		}
+
+		double difference = Math.abs((double)d1.getSortKey() - d2.getSortKey());
+		return Math.max(0, 1 - difference / DATE_TOLERANCE);
+	}
+
+	/**
+	 *
+	 *
+	 * @param s1
+	 * @param s2
+	 * @return
+	 */
+	private static double jaccard(Set<String> s1, Set<String> s2) {
+		if (s1.isEmpty() || s2.isEmpty()) {
+			return 0;
+		}
+
+		int intersection = 0;
+		for (String s : s1) {
+			if (s2.contains(s)) {
+				intersection++;
+			}
+		}
+
+		return (double)intersection / (s1.size() + s2.size() - intersection);
+	}
+
+	/**
+	 *
+	 *
+	 * @param s1
+	 * @param s2
+	 * @return
+	 */
+	private static boolean intersects(Set<String> s1, Set<String> s2) {
+		for (String s : s1) {
+			if (s2.contains(s)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 *
+	 *
+	 * @param text
+	 * @return
+	 */
+	private static String normalize(String text) {
+		if (text == null) {
+			return null;
+		}
+
+		text = text.trim();
+
+		if (text.length() == 0) {
+			return null;
+		}
+
+		return text.toUpperCase(Locale.ENGLISH);
+	}
+
+
+	/*************************************************************************
+	 * The information of an individual which is used for the comparison
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class Profile {
+		private String id = null;
+		private Set<String> surnames = new HashSet<>();
+		private Set<String> surnameCodes = new HashSet<>();
+		private Set<String> givenNames = new HashSet<>();
+		private Set<String> givenNameCodes = new HashSet<>();
+		private GedcomDate birth = null;
+		private GedcomDate death = null;
+		private int birthYear = NO_YEAR;
+		private Sex sex = null;
+		private Set<String> spouseFamilies = new HashSet<>();
+		private Set<String> childFamilies = new HashSet<>();
+	}
+
+
+	/*************************************************************************
+	 * Two blocks to compare, or a single block if the second block is <code>null</code>
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class BlockPair {
+		private List<Profile> block1 = null;
+		private List<Profile> block2 = null;
+
+		/**
+		 *
+		 *
+		 * @param block1
+		 * @param block2
+		 */
+		public BlockPair(List<Profile> block1, List<Profile> block2) {
+			this.block1 = block1;
+			this.block2 = block2;
+		}
+
+		/**
+		 *
+		 *
+		 * @return
+		 */
+		public long getComparisons() {
+			long size1 = block1.size();
+			return block2 == null ? size1 * (size1 - 1) / 2 : size1 * block2.size();
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class ProfileTask extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+
+		private GedcomIndividual[] individuals = null;
+		private String[] ids = null;
+		private Profile[] profiles = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param individuals
+		 * @param ids
+		 * @param profiles
+		 * @param from
+		 * @param to
+		 */
+		public ProfileTask(GedcomIndividual[] individuals, String[] ids,
+				Profile[] profiles, int from, int to) {
+			this.individuals = individuals;
+			this.ids = ids;
+			this.profiles = profiles;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Void compute() {
+			if (to - from <= 256) {
+				for (int i = from; i < to; i++) {
+					profiles[i] = createProfile(ids[i], individuals[i]);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ProfileTask(individuals, ids, profiles, from, middle),
+						new ProfileTask(individuals, ids, profiles, middle, to));
+			}
+
+			return null;
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class ScoreTask extends RecursiveTask<List<DuplicateCandidate>> {
+		private static final long serialVersionUID = 1L;
+
+		private BlockPair[] blockPairs = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param blockPairs
+		 * @param from
+		 * @param to
+		 */
+		public ScoreTask(BlockPair[] blockPairs, int from, int to) {
+			this.blockPairs = blockPairs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<DuplicateCandidate> compute() {
+			long comparisons = 0;
+			for (int i = from; i < to && comparisons <= PARALLEL_THRESHOLD; i++) {
+				comparisons += blockPairs[i].getComparisons();
+			}
+
+			if (to - from > 1 && comparisons > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				ScoreTask second = new ScoreTask(blockPairs, middle, to);
+				second.fork();
+
+				List<DuplicateCandidate> result = new ScoreTask(blockPairs, from, middle).compute();
+				result.addAll(second.join());
+				return result;
+			}
+
+			List<DuplicateCandidate> result = new ArrayList<>();
+			for (int i = from; i < to; i++) {
+				BlockPair pair = blockPairs[i];
+
+				if (pair.block2 == null) {
+					List<Profile> block = pair.block1;
+					for (int a = 0; a < block.size(); a++) {
+						for (int b = a + 1; b < block.size(); b++) {
+							addIfCandidate(result, block.get(a), block.get(b));
+						}
+					}
+				} else {
+					for (Profile p1 : pair.block1) {
+						for (Profile p2 : pair.block2) {
+							addIfCandidate(result, p1, p2);
+						}
+					}
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 *
+		 *
+		 * @param result
+		 * @param p1
+		 * @param p2
+		 */
+		private void addIfCandidate(List<DuplicateCandidate> result, Profile p1, Profile p2) {
+			if (p1 == p2) {
+				return;
+			}
+
+			double score = score(p1, p2);
+
+			if (score >= minimumScore) {
+				//Always use the same order of the IDs, so that the same pair
+				//found in different blocks can be detected
+				if (p1.id.compareTo(p2.id) < 0) {
+					result.add(new DuplicateCandidate(p1.id, p2.id, score));
+				} else {
+					result.add(new DuplicateCandidate(p2.id, p1.id, score));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of individuals and families which are connected through links, 
+ * and which have no links to the records of any other group.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class FamilyTreeComponent implements Comparable<FamilyTreeComponent> {
+
+	private final List<String> individualIds;
+	private final List<String> familyIds;
+
+	/**
+	 *
+	 *
+	 * @param individualIds
+	 * @param familyIds
+	 */
+	public FamilyTreeComponent(List<String> individualIds, List<String> familyIds) {
+		this.individualIds = Collections.unmodifiableList(individualIds);
+		this.familyIds = Collections.unmodifiableList(familyIds);
+	}
+
+	/**
+	 *
+	 *
+	 * @return The IDs of the individuals, sorted
+	 */
+	public List<String> getIndividualIds() {
+		return individualIds;
+	}
+
+	/**
+	 *
+	 *
+	 * @return The IDs of the families, sorted
+	 */
+	public List<String> getFamilyIds() {
+		return familyIds;
+	}
+
+	/**
+	 *
+	 *
+	 * @return The number of individuals and families
+	 */
+	public int size() {
+		return individualIds.size() + familyIds.size();
+	}
+
+	/**
+	 * Orders the components by descending size
+	 */
+	@Override
+	public int compareTo(FamilyTreeComponent o) {
+		return Integer.compare(o.size(), size());
+	}
+
+	@Override
+	public String toString() {
+		return individualIds.size() + " individuals, " + familyIds.size() + " families";
+	}
+
+}
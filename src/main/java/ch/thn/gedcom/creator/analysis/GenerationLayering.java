@@ -0,0 +1,268 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+/**
+ * Assigns a generation to each individual of a {@link GedcomCreatorStructureStorage} 
+ * and finds the individuals which are their own ancestors.<br />
+ * <br />
+ * The parent to child edges are taken from the family relations of the storage 
+ * (see {@link GedcomCreatorStructureStorage#getChildrenOfIndividual(String)}) 
+ * and copied into primitive adjacency arrays. The individuals are then ordered 
+ * with Kahn's algorithm, one generation at a time: an individual joins the next 
+ * generation as soon as all its parents have been ordered. Large generations are 
+ * expanded in parallel. The whole pass runs in O(individuals + parent links).<br />
+ * <br />
+ * The storage must not be modified during a pass.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GenerationLayering {
+
+	/** The number of individuals below which a generation is not split any further */
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	private GedcomCreatorStructureStorage storage = null;
+	private ForkJoinPool pool = null;
+
+	/**
+	 * A layering which uses the common fork join pool
+	 *
+	 * @param storage
+	 */
+	public GenerationLayering(GedcomCreatorStructureStorage storage) {
+		this(storage, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 *
+	 *
+	 * @param storage
+	 * @param pool
+	 */
+	public GenerationLayering(GedcomCreatorStructureStorage storage, ForkJoinPool pool) {
+		this.storage = storage;
+		this.pool = pool;
+	}
+
+	/**
+	 * Computes the generations. Builds the family relations of the storage if 
+	 * they are outdated.
+	 *
+	 * @return
+	 */
+	public GenerationLayers compute() {
+		Map<String, GedcomIndividual> individuals = storage.getIndividuals();
+		int count = individuals.size();
+
+		String[] ids = new String[count];
+		IdentityHashMap<GedcomIndividual, Integer> indexes = new IdentityHashMap<>(count);
+
+		int i = 0;
+		for (Map.Entry<String, GedcomIndividual> entry : individuals.entrySet()) {
+			ids[i] = entry.getKey();
+			indexes.put(entry.getValue(), i++);
+		}
+
+		//The children of individual i are children[offsets[i]] to children[offsets[i + 1] - 1]
+		int[] offsets = new int[count + 1];
+		for (i = 0; i < count; i++) {
+			offsets[i + 1] = offsets[i] + storage.getChildrenOfIndividual(ids[i]).size();
+		}
+
+		int[] children = new int[offsets[count]];
+		int[] parentCount = new int[count];
+		for (i = 0; i < count; i++) {
+			int edge = offsets[i];
+			Set<GedcomIndividual> childrenOfIndividual = storage.getChildrenOfIndividual(ids[i]);
+
+			for (GedcomIndividual child : childrenOfIndividual) {
+				int childIndex = indexes.get(child);
+				children[edge++] = childIndex;
+				parentCount[childIndex]++;
+			}
+		}
+
+		Layering layering = new Layering(offsets, children, parentCount);
+
+		for (i = 0; i < count; i++) {
+			if (parentCount[i] == 0) {
+				layering.append(i, 0);
+			}
+		}
+
+		//The start of each generation in the order
+		int[] generationStarts = new int[count + 1];
+		int generationCount = 0;
+		int start = 0;
+		int end = layering.size();
+
+		while (start < end) {
+			generationStarts[generationCount++] = start;
+
+			if (end - start > PARALLEL_THRESHOLD) {
+				pool.invoke(new ExpandTask(layering, start, end, generationCount));
+			} else {
+				layering.expand(start, end, generationCount);
+			}
+
+			start = end;
+			end = layering.size();
+		}
+
+		generationStarts[generationCount] = end;
+
+		return new GenerationLayers(ids, layering.generations, layering.order, 
+				Arrays.copyOf(generationStarts, generationCount + 1), end);
+	}
+
+
+	/*************************************************************************
+	 *
+	 * The state of one layering pass. The order is filled up one generation 
+	 * at a time, each individual is appended exactly once.
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class Layering {
+		private int[] offsets = null;
+		private int[] children = null;
+		/** The number of parents of each individual which have not been ordered yet */
+		private AtomicIntegerArray remainingParents = null;
+
+		private int[] order = null;
+		private int[] generations = null;
+		private AtomicInteger size = new AtomicInteger();
+
+		/**
+		 *
+		 *
+		 * @param offsets
+		 * @param children
+		 * @param parentCount
+		 */
+		public Layering(int[] offsets, int[] children, int[] parentCount) {
+			this.offsets = offsets;
+			this.children = children;
+
+			remainingParents = new AtomicIntegerArray(parentCount);
+			order = new int[parentCount.length];
+			generations = new int[parentCount.length];
+			Arrays.fill(generations, GenerationLayers.NO_GENERATION);
+		}
+
+		/**
+		 *
+		 *
+		 * @return The number of ordered individuals
+		 */
+		public int size() {
+			return size.get();
+		}
+
+		/**
+		 *
+		 *
+		 * @param individual
+		 * @param generation
+		 */
+		public void append(int individual, int generation) {
+			generations[individual] = generation;
+			order[size.getAndIncrement()] = individual;
+		}
+
+		/**
+		 * Appends the children of the ordered individuals from start to end 
+		 * whose parents are all ordered now
+		 *
+		 * @param start
+		 * @param end
+		 * @param generation The generation of the appended children
+		 */
+		public void expand(int start, int end, int generation) {
+			for (int i = start; i < end; i++) {
+				int parent = order[i];
+
+				for (int edge = offsets[parent]; edge < offsets[parent + 1]; edge++) {
+					int child = children[edge];
+
+					if (remainingParents.decrementAndGet(child) == 0) {
+						append(child, generation);
+					}
+				}
+			}
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * Expands a range of a generation
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class ExpandTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private Layering layering = null;
+		private int from = 0;
+		private int to = 0;
+		private int generation = 0;
+
+		/**
+		 *
+		 *
+		 * @param layering
+		 * @param from
+		 * @param to
+		 * @param generation
+		 */
+		public ExpandTask(Layering layering, int from, int to, int generation) {
+			this.layering = layering;
+			this.from = from;
+			this.to = to;
+			this.generation = generation;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ExpandTask(layering, from, middle, generation), 
+						new ExpandTask(layering, middle, to, generation));
+			} else {
+				layering.expand(from, to, generation);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The generation of each individual, as computed by {@link GenerationLayering}. 
+ * Generation 0 contains the individuals without parents in the storage, and 
+ * each child is one generation below its lowest parent (the longest path from 
+ * generation 0).<br />
+ * <br />
+ * Individuals which are their own ancestors (or descendants of such individuals) 
+ * can not be ordered and do not have a generation.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GenerationLayers {
+
+	/** The generation of the individuals which could not be ordered */
+	public static final int NO_GENERATION = -1;
+
+	private final String[] ids;
+	private final int[] generations;
+	private final int[] order;
+	private final int[] generationStarts;
+	private final int ordered;
+
+	/**
+	 *
+	 *
+	 * @param ids The sorted IDs of the individuals
+	 * @param generations The generation of each individual, in the order of the IDs
+	 * @param order The indexes of the individuals in topological order, grouped 
+	 * by generation
+	 * @param generationStarts The start of each generation in the order, with 
+	 * the end of the last generation as last element
+	 * @param ordered The number of individuals which could be ordered
+	 */
+	GenerationLayers(String[] ids, int[] generations, int[] order, int[] generationStarts, 
+			int ordered) {
+		this.ids = ids;
+		this.generations = generations;
+		this.order = order;
+		this.generationStarts = generationStarts;
+		this.ordered = ordered;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getGenerationCount() {
+		return generationStarts.length - 1;
+	}
+
+	/**
+	 *
+	 *
+	 * @param individualId
+	 * @return The generation, or {@link #NO_GENERATION} if the individual is 
+	 * part of a cycle or does not exist
+	 */
+	public int getGeneration(String individualId) {
+		int index = Arrays.binarySearch(ids, individualId);
+		return (index < 0 ? NO_GENERATION : generations[index]);
+	}
+
+	/**
+	 *
+	 *
+	 * @param generation
+	 * @return The IDs of the individuals of the generation
+	 */
+	public List<String> getGeneration(int generation) {
+		return new OrderList(generationStarts[generation], generationStarts[generation + 1]);
+	}
+
+	/**
+	 * Returns the IDs of all the individuals which could be ordered, with all 
+	 * parents before their children
+	 *
+	 * @return
+	 */
+	public List<String> getTopologicalOrder() {
+		return new OrderList(0, ordered);
+	}
+
+	/**
+	 * Returns <code>true</code> if some individuals are their own ancestors
+	 *
+	 * @return
+	 */
+	public boolean hasCycles() {
+		return ordered < ids.length;
+	}
+
+	/**
+	 * Returns the IDs of the individuals which could not be ordered. These are 
+	 * the individuals which are their own ancestors, and all their descendants.
+	 *
+	 * @return
+	 */
+	public List<String> getUnorderedIndividuals() {
+		List<String> unordered = new ArrayList<>(ids.length - ordered);
+		for (int i = 0; i < ids.length; i++) {
+			if (generations[i] == NO_GENERATION) {
+				unordered.add(ids[i]);
+			}
+		}
+
+		return unordered;
+	}
+
+	@Override
+	public String toString() {
+		return getGenerationCount() + " generations, " + (ids.length - ordered) 
+				+ " unordered individuals";
+	}
+
+
+	/*************************************************************************
+	 *
+	 * A read only view of a range of the topological order
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class OrderList extends AbstractList<String> {
+
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param from
+		 * @param to
+		 */
+		public OrderList(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public String get(int index) {
+			if (index < 0 || index >= to - from) {
+				throw new IndexOutOfBoundsException("Index " + index + ", size " + (to - from));
+			}
+
+			return ids[order[from + index]];
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+
+}
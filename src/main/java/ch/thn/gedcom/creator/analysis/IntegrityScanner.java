@@ -0,0 +1,269 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+/**
+ * Finds the links of individuals and families to records which do not exist 
+ * in a {@link GedcomCreatorStructureStorage}. Other than 
+ * {@link GedcomCreatorStructureStorage#getMissingIndividuals()} and 
+ * {@link GedcomCreatorStructureStorage#getMissingFamilies()}, the scanner does 
+ * not need the family relations to be built. The records are only read when 
+ * the results are consumed, and the scan can be split up for parallel 
+ * processing.<br />
+ * <br />
+ * The storage must not be modified while the results are consumed.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class IntegrityScanner {
+
+	/** The number of records below which a spliterator is not split any further */
+	private static final int SPLIT_THRESHOLD = 128;
+
+	private GedcomCreatorStructureStorage storage = null;
+
+	/**
+	 *
+	 *
+	 * @param storage
+	 */
+	public IntegrityScanner(GedcomCreatorStructureStorage storage) {
+		this.storage = storage;
+	}
+
+	/**
+	 * Returns a spliterator over the missing references of all individuals 
+	 * and families. The records are scanned while the spliterator is advanced. 
+	 * A record which links to the same missing record more than once reports 
+	 * each link.
+	 *
+	 * @return
+	 */
+	public Spliterator<MissingReference> spliterator() {
+		Map<String, GedcomIndividual> individuals = storage.getIndividuals();
+		Map<String, GedcomFamily> families = storage.getFamilies();
+
+		String[] ids = new String[individuals.size() + families.size()];
+		AbstractGedcomStructure[] records = new AbstractGedcomStructure[ids.length];
+
+		int i = 0;
+		for (Map.Entry<String, GedcomIndividual> entry : individuals.entrySet()) {
+			ids[i] = entry.getKey();
+			records[i++] = entry.getValue();
+		}
+
+		for (Map.Entry<String, GedcomFamily> entry : families.entrySet()) {
+			ids[i] = entry.getKey();
+			records[i++] = entry.getValue();
+		}
+
+		return new MissingReferenceSpliterator(ids, records, 0, ids.length);
+	}
+
+	/**
+	 *
+	 *
+	 * @param parallel
+	 * @return A stream over the missing references, see {@link #spliterator()}
+	 */
+	public Stream<MissingReference> stream(boolean parallel) {
+		return StreamSupport.stream(spliterator(), parallel);
+	}
+
+	/**
+	 * Scans the records in parallel and returns the distinct missing references. 
+	 * The scan stops as soon as the limit is reached.
+	 *
+	 * @param limit The maximum number of returned references
+	 * @return The missing references, in no particular order
+	 */
+	public List<MissingReference> scan(long limit) {
+		final Set<MissingReference> seen = ConcurrentHashMap.newKeySet();
+
+		return stream(true)
+				.unordered()
+				.filter(new Predicate<MissingReference>() {
+					@Override
+					public boolean test(MissingReference reference) {
+						return seen.add(reference);
+					}
+				})
+				.limit(limit)
+				.collect(Collectors.<MissingReference>toList());
+	}
+
+	/**
+	 * Scans all the records in parallel
+	 *
+	 * @return The distinct missing references, in no particular order
+	 */
+	public List<MissingReference> scan() {
+		return scan(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns <code>true</code> if at least one record links to a record which 
+	 * does not exist. Stops at the first missing reference.
+	 *
+	 * @return
+	 */
+	public boolean hasMissingReferences() {
+		return stream(true).findAny().isPresent();
+	}
+
+	/**
+	 * Adds the missing references of the given record to the queue
+	 *
+	 * @param id
+	 * @param record
+	 * @param queue
+	 */
+	private void scanRecord(String id, AbstractGedcomStructure record, 
+			ArrayDeque<MissingReference> queue) {
+		if (record instanceof GedcomIndividual) {
+			GedcomIndividual individual = (GedcomIndividual)record;
+
+			for (String link : individual.getSpouseFamilyLinks()) {
+				if (link != null && !storage.hasFamily(link)) {
+					queue.add(new MissingReference(id, "FAMS", link));
+				}
+			}
+
+			for (String link : individual.getChildFamilyLinks()) {
+				if (link != null && !storage.hasFamily(link)) {
+					queue.add(new MissingReference(id, "FAMC", link));
+				}
+			}
+		} else {
+			GedcomFamily family = (GedcomFamily)record;
+
+			String link = family.getHusbandLink();
+			if (link != null && !storage.hasIndividual(link)) {
+				queue.add(new MissingReference(id, "HUSB", link));
+			}
+
+			link = family.getWifeLink();
+			if (link != null && !storage.hasIndividual(link)) {
+				queue.add(new MissingReference(id, "WIFE", link));
+			}
+
+			for (String childLink : family.getChildLinks()) {
+				if (childLink != null && !storage.hasIndividual(childLink)) {
+					queue.add(new MissingReference(id, "CHIL", childLink));
+				}
+			}
+		}
+	}
+
+
+	/*************************************************************************
+	 * Scans a range of records. Each record is only read by one spliterator, 
+	 * thus the records are never accessed by more than one thread.
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class MissingReferenceSpliterator implements Spliterator<MissingReference> {
+
+		private String[] ids = null;
+		private AbstractGedcomStructure[] records = null;
+		private int index = 0;
+		private int end = 0;
+
+		/** The found references of the current record which have not been consumed yet */
+		private ArrayDeque<MissingReference> pending = new ArrayDeque<>(4);
+
+		/**
+		 *
+		 *
+		 * @param ids
+		 * @param records
+		 * @param index
+		 * @param end
+		 */
+		public MissingReferenceSpliterator(String[] ids, AbstractGedcomStructure[] records, 
+				int index, int end) {
+			this.ids = ids;
+			this.records = records;
+			this.index = index;
+			this.end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super MissingReference> action) {
+			while (pending.isEmpty()) {
+				if (index >= end) {
+					return false;
+				}
+
+				scanRecord(ids[index], records[index], pending);
+				index++;
+			}
+
+			action.accept(pending.poll());
+			return true;
+		}
+
+		@Override
+		public Spliterator<MissingReference> trySplit() {
+			int remaining = end - index;
+
+			//Only split when no references of the current record are pending
+			if (remaining < SPLIT_THRESHOLD || !pending.isEmpty()) {
+				return null;
+			}
+
+			int middle = index + (remaining >>> 1);
+			Spliterator<MissingReference> prefix = new MissingReferenceSpliterator(ids, records, index, middle);
+			index = middle;
+
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			//The number of records, not the number of missing references
+			return end - index + pending.size();
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+
+	}
+
+}
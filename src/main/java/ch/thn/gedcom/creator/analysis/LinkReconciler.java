@@ -0,0 +1,580 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomEnums.Sex;
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.collect.ArrayListMultimap;
+
+/**
+ * Finds and repairs links which only exist on one side of a relation:<br />
+ * - A CHIL line of a family without the FAMC line of the individual, and the 
+ * other way around<br />
+ * - A HUSB or WIFE line of a family without the FAMS line of the individual, 
+ * and the other way around<br />
+ * <br />
+ * The links of all the records are read once, in parallel, into hashed link 
+ * sets. The sets are then compared in parallel, without following the paths of 
+ * the records again. A FAMS line whose family does not link back is repaired 
+ * by setting the individual as husband or wife (depending on the sex of the 
+ * individual), if that spouse is not set yet. Otherwise the link is reported as 
+ * conflict.<br />
+ * <br />
+ * Links to records which do not exist are not part of the reconciliation, see 
+ * {@link IntegrityScanner}. The storage must not be modified during a pass.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class LinkReconciler {
+
+	/** The number of records below which a task is not split any further */
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	private GedcomCreatorStructureStorage storage = null;
+	private ForkJoinPool pool = null;
+
+	/**
+	 * A reconciler which uses the common fork join pool
+	 *
+	 * @param storage
+	 */
+	public LinkReconciler(GedcomCreatorStructureStorage storage) {
+		this(storage, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 *
+	 *
+	 * @param storage
+	 * @param pool
+	 */
+	public LinkReconciler(GedcomCreatorStructureStorage storage, ForkJoinPool pool) {
+		this.storage = storage;
+		this.pool = pool;
+	}
+
+	/**
+	 * Finds the one-sided links without changing any records
+	 *
+	 * @return
+	 */
+	public ReconciliationReport findAsymmetries() {
+		return reconcile(false);
+	}
+
+	/**
+	 * Finds the one-sided links and adds the missing side. The family relations 
+	 * of the storage are rebuilt with the next call which needs them.
+	 *
+	 * @return
+	 */
+	public ReconciliationReport reconcile() {
+		return reconcile(true);
+	}
+
+	/**
+	 *
+	 *
+	 * @param apply
+	 * @return
+	 */
+	private ReconciliationReport reconcile(boolean apply) {
+		RecordTable table = new RecordTable(storage.getIndividuals(), storage.getFamilies());
+
+		pool.invoke(new ReadTask(table, 0, table.size()));
+		Findings findings = pool.invoke(new CompareTask(table, 0, table.size()));
+
+		List<LinkRepair> repairs = findings.repairs;
+		List<LinkRepair> conflicts = new ArrayList<>();
+		assignSpouses(table, findings.spouseFamilyLinks, repairs, conflicts);
+
+		if (!apply || repairs.isEmpty()) {
+			return new ReconciliationReport(repairs, conflicts, apply);
+		}
+
+		//Group the repairs by record, so that each record is only changed by one thread
+		ArrayListMultimap<AbstractGedcomStructure, LinkRepair> repairsOfRecord = ArrayListMultimap.create();
+		for (LinkRepair repair : repairs) {
+			repairsOfRecord.put(table.getRecord(repair), repair);
+		}
+
+		List<Map.Entry<AbstractGedcomStructure, Collection<LinkRepair>>> groups = 
+				new ArrayList<>(repairsOfRecord.asMap().entrySet());
+
+		List<LinkRepair> failed = pool.invoke(new ApplyTask(groups, 0, groups.size()));
+
+		if (!failed.isEmpty()) {
+			repairs = new ArrayList<>(repairs);
+			repairs.removeAll(failed);
+			conflicts.addAll(failed);
+		}
+
+		storage.invalidateFamilyRelations();
+
+		return new ReconciliationReport(repairs, conflicts, true);
+	}
+
+	/**
+	 * Turns the FAMS lines whose family does not link back into HUSB and WIFE 
+	 * repairs. Runs sequentially since several individuals can claim the same 
+	 * spouse of a family.
+	 *
+	 * @param table
+	 * @param spouseFamilyLinks
+	 * @param repairs
+	 * @param conflicts
+	 */
+	private static void assignSpouses(RecordTable table, List<LinkRepair> spouseFamilyLinks, 
+			List<LinkRepair> repairs, List<LinkRepair> conflicts) {
+		Map<String, String[]> spousesOfFamily = new HashMap<>();
+
+		for (LinkRepair link : spouseFamilyLinks) {
+			String individualId = link.getRecordId();
+			String familyId = link.getXRef();
+
+			String[] spouses = spousesOfFamily.get(familyId);
+			if (spouses == null) {
+				LinkSets family = table.getFamilyLinks(familyId);
+				spouses = new String[] {family.husband, family.wife};
+				spousesOfFamily.put(familyId, spouses);
+			}
+
+			Sex sex = ((GedcomIndividual)table.getIndividual(individualId)).getSex();
+
+			if (spouses[0] == null && sex != Sex.FEMALE) {
+				spouses[0] = individualId;
+				repairs.add(new LinkRepair(familyId, "HUSB", individualId));
+			} else if (spouses[1] == null && sex != Sex.MALE) {
+				spouses[1] = individualId;
+				repairs.add(new LinkRepair(familyId, "WIFE", individualId));
+			} else {
+				conflicts.add(new LinkRepair(familyId, (sex == Sex.FEMALE ? "WIFE" : "HUSB"), individualId));
+			}
+		}
+	}
+
+	/**
+	 * Adds the missing link to the record
+	 *
+	 * @param record
+	 * @param repair
+	 * @return
+	 */
+	private static boolean apply(AbstractGedcomStructure record, LinkRepair repair) {
+		switch (repair.getTag()) {
+		case "HUSB":
+			return ((GedcomFamily)record).setHusbandLink(repair.getXRef());
+		case "WIFE":
+			return ((GedcomFamily)record).setWifeLink(repair.getXRef());
+		case "CHIL":
+			return ((GedcomFamily)record).addChildLink(repair.getXRef());
+		case "FAMS":
+			return ((GedcomIndividual)record).addSpouseFamilyLink(repair.getXRef());
+		case "FAMC":
+			return ((GedcomIndividual)record).addChildFamilyLink(repair.getXRef());
+		default:
+			return false;
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * The links of one record. Only the fields of the record type are set.
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class LinkSets {
+		/** HUSB of a family */
+		private String husband = null;
+		/** WIFE of a family */
+		private String wife = null;
+		/** CHIL of a family */
+		private Set<String> children = null;
+		/** FAMS of an individual */
+		private Set<String> spouseFamilies = null;
+		/** FAMC of an individual */
+		private Set<String> childFamilies = null;
+
+		/**
+		 *
+		 *
+		 * @param links
+		 * @return
+		 */
+		private static Set<String> toSet(List<String> links) {
+			Set<String> set = new HashSet<>(links);
+			set.remove(null);
+			return set;
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * All individuals and families of one pass, individuals first. The
+	 * link sets are filled in by the {@link ReadTask}.
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class RecordTable {
+		private String[] ids = null;
+		private AbstractGedcomStructure[] records = null;
+		private LinkSets[] links = null;
+		private int individualCount = 0;
+
+		private Map<String, Integer> individualIndex = null;
+		private Map<String, Integer> familyIndex = null;
+
+		/**
+		 *
+		 *
+		 * @param individuals
+		 * @param families
+		 */
+		public RecordTable(Map<String, GedcomIndividual> individuals, Map<String, GedcomFamily> families) {
+			int size = individuals.size() + families.size();
+			ids = new String[size];
+			records = new AbstractGedcomStructure[size];
+			links = new LinkSets[size];
+			individualCount = individuals.size();
+
+			individualIndex = new HashMap<>(individuals.size() * 2);
+			familyIndex = new HashMap<>(families.size() * 2);
+
+			int i = 0;
+			for (Map.Entry<String, GedcomIndividual> entry : individuals.entrySet()) {
+				individualIndex.put(entry.getKey(), i);
+				ids[i] = entry.getKey();
+				records[i++] = entry.getValue();
+			}
+
+			for (Map.Entry<String, GedcomFamily> entry : families.entrySet()) {
+				familyIndex.put(entry.getKey(), i);
+				ids[i] = entry.getKey();
+				records[i++] = entry.getValue();
+			}
+		}
+
+		/**
+		 *
+		 *
+		 * @return
+		 */
+		public int size() {
+			return ids.length;
+		}
+
+		/**
+		 *
+		 *
+		 * @param individualId
+		 * @return The links of the individual, or <code>null</code> if it does not exist
+		 */
+		public LinkSets getIndividualLinks(String individualId) {
+			Integer index = individualIndex.get(individualId);
+			return (index == null ? null : links[index]);
+		}
+
+		/**
+		 *
+		 *
+		 * @param familyId
+		 * @return The links of the family, or <code>null</code> if it does not exist
+		 */
+		public LinkSets getFamilyLinks(String familyId) {
+			Integer index = familyIndex.get(familyId);
+			return (index == null ? null : links[index]);
+		}
+
+		/**
+		 *
+		 *
+		 * @param individualId
+		 * @return
+		 */
+		public AbstractGedcomStructure getIndividual(String individualId) {
+			return records[individualIndex.get(individualId)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param repair
+		 * @return The record which the repair has to be applied to
+		 */
+		public AbstractGedcomStructure getRecord(LinkRepair repair) {
+			if (repair.isIndividualRecord()) {
+				return records[individualIndex.get(repair.getRecordId())];
+			} else {
+				return records[familyIndex.get(repair.getRecordId())];
+			}
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * The one-sided links found by a {@link CompareTask}
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class Findings {
+		/** The missing links whose side is known */
+		private List<LinkRepair> repairs = new ArrayList<>();
+		/** The FAMS lines whose family does not link back */
+		private List<LinkRepair> spouseFamilyLinks = new ArrayList<>();
+
+		/**
+		 *
+		 *
+		 * @param findings
+		 */
+		public void addAll(Findings findings) {
+			repairs.addAll(findings.repairs);
+			spouseFamilyLinks.addAll(findings.spouseFamilyLinks);
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * Reads the links of the records into hashed sets
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class ReadTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private RecordTable table = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param table
+		 * @param from
+		 * @param to
+		 */
+		public ReadTask(RecordTable table, int from, int to) {
+			this.table = table;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ReadTask(table, from, middle), new ReadTask(table, middle, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				LinkSets links = new LinkSets();
+
+				if (i < table.individualCount) {
+					GedcomIndividual individual = (GedcomIndividual)table.records[i];
+					links.spouseFamilies = LinkSets.toSet(individual.getSpouseFamilyLinks());
+					links.childFamilies = LinkSets.toSet(individual.getChildFamilyLinks());
+				} else {
+					GedcomFamily family = (GedcomFamily)table.records[i];
+					links.husband = family.getHusbandLink();
+					links.wife = family.getWifeLink();
+					links.children = LinkSets.toSet(family.getChildLinks());
+				}
+
+				table.links[i] = links;
+			}
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * Compares the link sets of each record with the link sets of the 
+	 * linked records
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class CompareTask extends RecursiveTask<Findings> {
+		private static final long serialVersionUID = 1L;
+
+		private RecordTable table = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param table
+		 * @param from
+		 * @param to
+		 */
+		public CompareTask(RecordTable table, int from, int to) {
+			this.table = table;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Findings compute() {
+			if (to - from > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				CompareTask second = new CompareTask(table, middle, to);
+				second.fork();
+
+				Findings findings = new CompareTask(table, from, middle).compute();
+				findings.addAll(second.join());
+				return findings;
+			}
+
+			Findings findings = new Findings();
+
+			for (int i = from; i < to; i++) {
+				String id = table.ids[i];
+				LinkSets links = table.links[i];
+
+				if (i < table.individualCount) {
+					for (String familyId : links.childFamilies) {
+						LinkSets family = table.getFamilyLinks(familyId);
+						if (family != null && !family.children.contains(id)) {
+							findings.repairs.add(new LinkRepair(familyId, "CHIL", id));
+						}
+					}
+
+					for (String familyId : links.spouseFamilies) {
+						LinkSets family = table.getFamilyLinks(familyId);
+						if (family != null && !id.equals(family.husband) && !id.equals(family.wife)) {
+							findings.spouseFamilyLinks.add(new LinkRepair(id, "FAMS", familyId));
+						}
+					}
+				} else {
+					compareSpouse(findings, id, links.husband);
+					compareSpouse(findings, id, links.wife);
+
+					for (String childId : links.children) {
+						LinkSets child = table.getIndividualLinks(childId);
+						if (child != null && !child.childFamilies.contains(id)) {
+							findings.repairs.add(new LinkRepair(childId, "FAMC", id));
+						}
+					}
+				}
+			}
+
+			return findings;
+		}
+
+		/**
+		 *
+		 *
+		 * @param findings
+		 * @param familyId
+		 * @param spouseId
+		 */
+		private void compareSpouse(Findings findings, String familyId, String spouseId) {
+			if (spouseId == null) {
+				return;
+			}
+
+			LinkSets spouse = table.getIndividualLinks(spouseId);
+			if (spouse != null && !spouse.spouseFamilies.contains(familyId)) {
+				findings.repairs.add(new LinkRepair(spouseId, "FAMS", familyId));
+			}
+		}
+	}
+
+
+	/*************************************************************************
+	 *
+	 * Applies the repairs, one record per group
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private static class ApplyTask extends RecursiveTask<List<LinkRepair>> {
+		private static final long serialVersionUID = 1L;
+
+		private List<Map.Entry<AbstractGedcomStructure, Collection<LinkRepair>>> groups = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param groups
+		 * @param from
+		 * @param to
+		 */
+		public ApplyTask(List<Map.Entry<AbstractGedcomStructure, Collection<LinkRepair>>> groups, 
+				int from, int to) {
+			this.groups = groups;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<LinkRepair> compute() {
+			if (to - from > PARALLEL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				ApplyTask second = new ApplyTask(groups, middle, to);
+				second.fork();
+
+				List<LinkRepair> failed = new ApplyTask(groups, from, middle).compute();
+				failed.addAll(second.join());
+				return failed;
+			}
+
+			List<LinkRepair> failed = new ArrayList<>();
+
+			for (int i = from; i < to; i++) {
+				AbstractGedcomStructure record = groups.get(i).getKey();
+
+				for (LinkRepair repair : groups.get(i).getValue()) {
+					if (!apply(record, repair)) {
+						failed.add(repair);
+					}
+				}
+			}
+
+			return failed;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+/**
+ * A link which is missing on one side of a relation, for example a CHIL line 
+ * of a family whose individual does not have the FAMC line back to the family.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class LinkRepair {
+
+	private final String recordId;
+	private final String tag;
+	private final String xref;
+
+	/**
+	 *
+	 *
+	 * @param recordId The ID of the record which is missing the link
+	 * @param tag The tag of the missing link line (HUSB, WIFE, CHIL, FAMS or FAMC)
+	 * @param xref The XRef of the missing link
+	 */
+	public LinkRepair(String recordId, String tag, String xref) {
+		this.recordId = recordId;
+		this.tag = tag;
+		this.xref = xref;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getRecordId() {
+		return recordId;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getXRef() {
+		return xref;
+	}
+
+	/**
+	 * Returns <code>true</code> if the link is missing on an individual, 
+	 * <code>false</code> if it is missing on a family
+	 *
+	 * @return
+	 */
+	public boolean isIndividualRecord() {
+		return tag.startsWith("FAM");
+	}
+
+	@Override
+	public int hashCode() {
+		int result = recordId.hashCode();
+		result = 31 * result + tag.hashCode();
+		result = 31 * result + xref.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof LinkRepair)) {
+			return false;
+		}
+
+		LinkRepair other = (LinkRepair)obj;
+		return recordId.equals(other.recordId) && tag.equals(other.tag) 
+				&& xref.equals(other.xref);
+	}
+
+	@Override
+	public String toString() {
+		return recordId + " + " + tag + " @" + xref + "@";
+	}
+
+}
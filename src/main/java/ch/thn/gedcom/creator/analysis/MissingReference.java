@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+/**
+ * A link of a record to an individual or family which does not exist in 
+ * the storage.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class MissingReference {
+
+	private final String sourceId;
+	private final String tag;
+	private final String targetXRef;
+
+	/**
+	 *
+	 *
+	 * @param sourceId The ID of the record with the link
+	 * @param tag The tag of the link line (HUSB, WIFE, CHIL, FAMS or FAMC)
+	 * @param targetXRef The XRef which could not be found
+	 */
+	public MissingReference(String sourceId, String tag, String targetXRef) {
+		this.sourceId = sourceId;
+		this.tag = tag;
+		this.targetXRef = targetXRef;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getSourceId() {
+		return sourceId;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public String getTargetXRef() {
+		return targetXRef;
+	}
+
+	/**
+	 * Returns <code>true</code> if the missing record is an individual, 
+	 * <code>false</code> if it is a family
+	 *
+	 * @return
+	 */
+	public boolean isMissingIndividual() {
+		return !tag.startsWith("FAM");
+	}
+
+	@Override
+	public int hashCode() {
+		int result = sourceId.hashCode();
+		result = 31 * result + tag.hashCode();
+		result = 31 * result + targetXRef.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof MissingReference)) {
+			return false;
+		}
+
+		MissingReference other = (MissingReference)obj;
+		return sourceId.equals(other.sourceId) && tag.equals(other.tag) 
+				&& targetXRef.equals(other.targetXRef);
+	}
+
+	@Override
+	public String toString() {
+		return sourceId + " " + tag + " @" + targetXRef + "@";
+	}
+
+}
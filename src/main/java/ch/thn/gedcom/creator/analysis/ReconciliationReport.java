@@ -0,0 +1,93 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a {@link LinkReconciler} pass
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class ReconciliationReport {
+
+	private final List<LinkRepair> repairs;
+	private final List<LinkRepair> conflicts;
+	private final boolean applied;
+
+	/**
+	 *
+	 *
+	 * @param repairs
+	 * @param conflicts
+	 * @param applied
+	 */
+	public ReconciliationReport(List<LinkRepair> repairs, List<LinkRepair> conflicts, 
+			boolean applied) {
+		this.repairs = Collections.unmodifiableList(repairs);
+		this.conflicts = Collections.unmodifiableList(conflicts);
+		this.applied = applied;
+	}
+
+	/**
+	 * The missing links which have been added, or which would be added if the 
+	 * report has not been applied
+	 *
+	 * @return
+	 */
+	public List<LinkRepair> getRepairs() {
+		return repairs;
+	}
+
+	/**
+	 * The missing links which can not be added automatically, for example a 
+	 * FAMS link to a family which already has a different husband and wife. 
+	 * If the report has been applied, also the links which could not be set.
+	 *
+	 * @return
+	 */
+	public List<LinkRepair> getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * Returns <code>true</code> if the repairs have been applied to the records
+	 *
+	 * @return
+	 */
+	public boolean isApplied() {
+		return applied;
+	}
+
+	/**
+	 * Returns <code>true</code> if all the links were symmetric
+	 *
+	 * @return
+	 */
+	public boolean isConsistent() {
+		return repairs.isEmpty() && conflicts.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return (applied ? "Repaired " : "Found ") + repairs.size() + " missing links, " 
+				+ conflicts.size() + " conflicts";
+	}
+
+}
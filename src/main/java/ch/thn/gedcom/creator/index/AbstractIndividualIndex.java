@@ -0,0 +1,162 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.collect.SetMultimap;
+
+/**
+ * An index which maps keys, extracted from the individuals, to the individuals.
+ * The keys of each indexed individual are kept, so that an individual can be
+ * removed from the index even if it has been modified after it has been added.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ * @param <K>
+ */
+public abstract class AbstractIndividualIndex<K> implements GedcomIndividualIndex {
+
+	private SetMultimap<K, GedcomIndividual> index = null;
+	private Map<GedcomIndividual, Set<K>> keysOfIndividual = null;
+
+	/**
+	 *
+	 *
+	 * @param index The multimap to use for the index
+	 */
+	protected AbstractIndividualIndex(SetMultimap<K, GedcomIndividual> index) {
+		this.index = index;
+
+		keysOfIndividual = new HashMap<>();
+	}
+
+	/**
+	 * Collects the index keys of the given individual
+	 *
+	 * @param individual
+	 * @param keys The set to add the keys to
+	 */
+	protected abstract void collectKeys(GedcomIndividual individual, Set<K> keys);
+
+	@Override
+	public void add(GedcomIndividual individual) {
+		remove(individual);
+
+		Set<K> keys = new HashSet<>();
+		collectKeys(individual, keys);
+
+		for (K key : keys) {
+			index.put(key, individual);
+		}
+
+		keysOfIndividual.put(individual, keys);
+	}
+
+	@Override
+	public void addAll(Collection<GedcomIndividual> individuals) {
+		for (GedcomIndividual individual : individuals) {
+			add(individual);
+		}
+	}
+
+	@Override
+	public void remove(GedcomIndividual individual) {
+		Set<K> keys = keysOfIndividual.remove(individual);
+
+		if (keys == null) {
+			return;
+		}
+
+		for (K key : keys) {
+			index.remove(key, individual);
+		}
+	}
+
+	@Override
+	public void clear() {
+		index.clear();
+		keysOfIndividual.clear();
+	}
+
+	/**
+	 * Returns an unmodifiable view on the individuals with the given key
+	 *
+	 * @param key
+	 * @return
+	 */
+	protected Set<GedcomIndividual> get(K key) {
+		return Collections.unmodifiableSet(index.get(key));
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	protected SetMultimap<K, GedcomIndividual> getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns an unmodifiable view on all the keys in this index
+	 *
+	 * @return
+	 */
+	public Set<K> getKeys() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	/**
+	 * Returns the number of indexed individuals
+	 *
+	 * @return
+	 */
+	public int size() {
+		return keysOfIndividual.size();
+	}
+
+	/**
+	 * Normalizes a text key (trimmed and upper case). Empty texts are not used
+	 * as key.
+	 *
+	 * @param text
+	 * @return The normalized key, or <code>null</code> if the text is empty
+	 */
+	protected static String normalize(String text) {
+		if (text == null) {
+			return null;
+		}
+
+		text = text.trim();
+
+		if (text.length() == 0) {
+			return null;
+		}
+
+		return text.toUpperCase(Locale.ENGLISH);
+	}
+
+}
@@ -0,0 +1,62 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Collection;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+/**
+ * A secondary index over individuals. Indexes can be added to a
+ * {@link GedcomCreatorStructureStorage} which then keeps them up to date when
+ * individuals are added or removed.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface GedcomIndividualIndex {
+
+	/**
+	 * Adds the individual to the index. If the individual is already in the
+	 * index, its index entries are updated.
+	 *
+	 * @param individual
+	 */
+	public void add(GedcomIndividual individual);
+
+	/**
+	 * Adds all the given individuals to the index.
+	 *
+	 * @param individuals
+	 */
+	public void addAll(Collection<GedcomIndividual> individuals);
+
+	/**
+	 * Removes the individual from the index
+	 *
+	 * @param individual
+	 */
+	public void remove(GedcomIndividual individual);
+
+	/**
+	 * Removes all the individuals from the index
+	 *
+	 */
+	public void clear();
+
+}
@@ -0,0 +1,123 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive int values, used for index postings to avoid
+ * boxing every entry.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+class IntList {
+
+	private int[] values = null;
+	private int size = 0;
+
+	/**
+	 *
+	 *
+	 * @param capacity
+	 */
+	public IntList(int capacity) {
+		values = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 *
+	 *
+	 * @param value
+	 */
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+
+		values[size++] = value;
+	}
+
+	/**
+	 * Removes the first occurrence of the given value. The order of the values
+	 * is not kept.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public boolean removeValue(int value) {
+		for (int i = 0; i < size; i++) {
+			if (values[i] == value) {
+				values[i] = values[--size];
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 *
+	 *
+	 * @return The last value, which is removed from the list
+	 */
+	public int removeLast() {
+		return values[--size];
+	}
+
+	/**
+	 *
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		}
+
+		return values[index];
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 *
+	 *
+	 * @return A copy of the values
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+}
@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Collection;
+
+/**
+ * Encodes names into phonetic codes, so that names which sound similar get
+ * the same code.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface PhoneticEncoder {
+
+	/**
+	 * Adds the phonetic code(s) of the given name to the given collection.
+	 * Some encoders produce more than one code for a name. Nothing is added
+	 * if the name can not be encoded (for example because it is empty).
+	 *
+	 * @param name
+	 * @param codes
+	 */
+	public void encode(String name, Collection<String> codes);
+
+}
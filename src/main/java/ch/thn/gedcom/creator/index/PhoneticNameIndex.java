@@ -0,0 +1,428 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.creator.structures.GedcomStructureListener;
+
+/**
+ * Indexes the individuals by the phonetic codes of the surnames and given
+ * names of all their names, which allows a fuzzy search for names.<br />
+ * <br />
+ * Each indexed individual gets an int ordinal and the postings of each code
+ * are kept as primitive int lists. {@link #addAll(Collection)} encodes the
+ * names in parallel. The index registers itself as {@link GedcomStructureListener}
+ * on each indexed individual and updates the entries of an individual when
+ * its names are modified (for example through addName, setName or removeName).<br />
+ * <br />
+ * This index is not thread safe.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class PhoneticNameIndex implements GedcomIndividualIndex, GedcomStructureListener {
+
+	private static final String PERSONAL_NAME_STRUCTURE = "PERSONAL_NAME_STRUCTURE";
+
+	/** The number of individuals below which the names are encoded without splitting the work */
+	private static final int PARALLEL_THRESHOLD = 512;
+
+	private static final String[] NO_CODES = new String[0];
+
+	private PhoneticEncoder encoder = null;
+	private ForkJoinPool pool = null;
+
+	/** The individuals by their ordinal. Removed individuals leave a null slot */
+	private ArrayList<GedcomIndividual> individuals = null;
+	private ArrayList<String[]> surnameCodes = null;
+	private ArrayList<String[]> givenNameCodes = null;
+	private HashMap<GedcomIndividual, Integer> ordinals = null;
+	private IntList freeOrdinals = null;
+
+	private HashMap<String, IntList> surnamePostings = null;
+	private HashMap<String, IntList> givenNamePostings = null;
+
+	/**
+	 * A soundex index which uses the common fork join pool
+	 *
+	 */
+	public PhoneticNameIndex() {
+		this(new SoundexEncoder(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 *
+	 *
+	 * @param encoder The encoder for the names
+	 * @param pool The pool used for encoding the names in parallel
+	 */
+	public PhoneticNameIndex(PhoneticEncoder encoder, ForkJoinPool pool) {
+		this.encoder = encoder;
+		this.pool = pool;
+
+		individuals = new ArrayList<>();
+		surnameCodes = new ArrayList<>();
+		givenNameCodes = new ArrayList<>();
+		ordinals = new HashMap<>();
+		freeOrdinals = new IntList(16);
+
+		surnamePostings = new HashMap<>();
+		givenNamePostings = new HashMap<>();
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public PhoneticEncoder getEncoder() {
+		return encoder;
+	}
+
+	@Override
+	public void add(GedcomIndividual individual) {
+		String[][] codes = new String[2][];
+		encodeNames(individual, codes, 0);
+		add(individual, codes[0], codes[1]);
+	}
+
+	/**
+	 * Adds all the given individuals. The names are encoded in parallel.
+	 *
+	 * @param individuals
+	 */
+	@Override
+	public void addAll(Collection<GedcomIndividual> individuals) {
+		GedcomIndividual[] array = individuals.toArray(new GedcomIndividual[individuals.size()]);
+		String[][] codes = new String[array.length * 2][];
+
+		EncodeTask task = new EncodeTask(array, codes, 0, array.length);
+
+		if (array.length < PARALLEL_THRESHOLD) {
+			task.compute();
+		} else {
+			pool.invoke(task);
+		}
+
+		for (int i = 0; i < array.length; i++) {
+			add(array[i], codes[i * 2], codes[i * 2 + 1]);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param individual
+	 * @param surnames
+	 * @param givenNames
+	 */
+	private void add(GedcomIndividual individual, String[] surnames, String[] givenNames) {
+		Integer existing = ordinals.get(individual);
+
+		if (existing != null) {
+			removePostings(existing);
+		} else {
+			individual.addStructureListener(this);
+		}
+
+		int ordinal;
+		if (existing != null) {
+			ordinal = existing;
+		} else if (!freeOrdinals.isEmpty()) {
+			ordinal = freeOrdinals.removeLast();
+		} else {
+			ordinal = this.individuals.size();
+			this.individuals.add(null);
+			surnameCodes.add(null);
+			givenNameCodes.add(null);
+		}
+
+		this.individuals.set(ordinal, individual);
+		surnameCodes.set(ordinal, surnames);
+		givenNameCodes.set(ordinal, givenNames);
+		ordinals.put(individual, ordinal);
+
+		addPostings(surnamePostings, surnames, ordinal);
+		addPostings(givenNamePostings, givenNames, ordinal);
+	}
+
+	@Override
+	public void remove(GedcomIndividual individual) {
+		Integer ordinal = ordinals.remove(individual);
+
+		if (ordinal == null) {
+			return;
+		}
+
+		individual.removeStructureListener(this);
+		removePostings(ordinal);
+
+		this.individuals.set(ordinal, null);
+		surnameCodes.set(ordinal, null);
+		givenNameCodes.set(ordinal, null);
+		freeOrdinals.add(ordinal);
+	}
+
+	@Override
+	public void clear() {
+		for (GedcomIndividual individual : ordinals.keySet()) {
+			individual.removeStructureListener(this);
+		}
+
+		individuals.clear();
+		surnameCodes.clear();
+		givenNameCodes.clear();
+		ordinals.clear();
+		freeOrdinals = new IntList(16);
+
+		surnamePostings.clear();
+		givenNamePostings.clear();
+	}
+
+	@Override
+	public void structureModified(AbstractGedcomStructure structure, String lineName) {
+		if (lineName != null && !lineName.equals(PERSONAL_NAME_STRUCTURE)) {
+			return;
+		}
+
+		GedcomIndividual individual = (GedcomIndividual)structure;
+
+		if (ordinals.containsKey(individual)) {
+			add(individual);
+		}
+	}
+
+	/**
+	 * Returns all the individuals with a surname which sounds like the given name
+	 *
+	 * @param surname
+	 * @return
+	 */
+	public Set<GedcomIndividual> getIndividualsBySurname(String surname) {
+		return find(surnamePostings, surname);
+	}
+
+	/**
+	 * Returns all the individuals with a given name which sounds like the given name
+	 *
+	 * @param givenName
+	 * @return
+	 */
+	public Set<GedcomIndividual> getIndividualsByGivenName(String givenName) {
+		return find(givenNamePostings, givenName);
+	}
+
+	/**
+	 * Returns the phonetic surname codes of the given individual
+	 *
+	 * @param individual
+	 * @return The codes, or <code>null</code> if the individual is not indexed
+	 */
+	public String[] getSurnameCodes(GedcomIndividual individual) {
+		Integer ordinal = ordinals.get(individual);
+
+		if (ordinal == null) {
+			return null;
+		}
+
+		return surnameCodes.get(ordinal).clone();
+	}
+
+	/**
+	 * Returns the phonetic codes of the given name
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Set<String> encode(String name) {
+		Set<String> codes = new LinkedHashSet<>();
+		encoder.encode(name, codes);
+		return codes;
+	}
+
+	/**
+	 * Returns the number of indexed individuals
+	 *
+	 * @return
+	 */
+	public int size() {
+		return ordinals.size();
+	}
+
+	/**
+	 *
+	 *
+	 * @param postings
+	 * @param name
+	 * @return
+	 */
+	private Set<GedcomIndividual> find(HashMap<String, IntList> postings, String name) {
+		Set<GedcomIndividual> result = new HashSet<>();
+
+		for (String code : encode(name)) {
+			IntList list = postings.get(code);
+
+			if (list == null) {
+				continue;
+			}
+
+			for (int i = 0; i < list.size(); i++) {
+				result.add(individuals.get(list.get(i)));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 *
+	 *
+	 * @param ordinal
+	 */
+	private void removePostings(int ordinal) {
+		removePostings(surnamePostings, surnameCodes.get(ordinal), ordinal);
+		removePostings(givenNamePostings, givenNameCodes.get(ordinal), ordinal);
+	}
+
+	/**
+	 *
+	 *
+	 * @param postings
+	 * @param codes
+	 * @param ordinal
+	 */
+	private static void addPostings(HashMap<String, IntList> postings, String[] codes, int ordinal) {
+		for (String code : codes) {
+			IntList list = postings.get(code);
+
+			if (list == null) {
+				list = new IntList(4);
+				postings.put(code, list);
+			}
+
+			list.add(ordinal);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param postings
+	 * @param codes
+	 * @param ordinal
+	 */
+	private static void removePostings(HashMap<String, IntList> postings, String[] codes, int ordinal) {
+		for (String code : codes) {
+			IntList list = postings.get(code);
+
+			if (list != null) {
+				list.removeValue(ordinal);
+
+				if (list.isEmpty()) {
+					postings.remove(code);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encodes the surnames and given names of all the names of the individual
+	 * and stores them at the given position (surnames) and the following
+	 * position (given names) in the codes array.
+	 *
+	 * @param individual
+	 * @param codes
+	 * @param position
+	 */
+	private void encodeNames(GedcomIndividual individual, String[][] codes, int position) {
+		Set<String> surnames = new LinkedHashSet<>();
+		Set<String> givenNames = new LinkedHashSet<>();
+
+		int count = individual.getNumberOfNames();
+		for (int i = 0; i < count; i++) {
+			encoder.encode(individual.getSurname(i), surnames);
+
+			String given = individual.getGivenName(i);
+			if (given != null) {
+				//The given names are stored as comma separated list
+				for (String part : given.split("[,\\s]+")) {
+					encoder.encode(part, givenNames);
+				}
+			}
+		}
+
+		codes[position] = surnames.isEmpty() ? NO_CODES : surnames.toArray(new String[surnames.size()]);
+		codes[position + 1] = givenNames.isEmpty() ? NO_CODES : givenNames.toArray(new String[givenNames.size()]);
+	}
+
+
+	/*************************************************************************
+	 * Encodes the names of a range of individuals and splits the range
+	 * if it is too large
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class EncodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private GedcomIndividual[] individuals = null;
+		private String[][] codes = null;
+		private int from = 0;
+		private int to = 0;
+
+		/**
+		 *
+		 *
+		 * @param individuals
+		 * @param codes
+		 * @param from
+		 * @param to
+		 */
+		public EncodeTask(GedcomIndividual[] individuals, String[][] codes, int from, int to) {
+			this.individuals = individuals;
+			this.codes = codes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					encodeNames(individuals[i], codes, i * 2);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new EncodeTask(individuals, codes, from, middle),
+						new EncodeTask(individuals, codes, middle, to));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Set;
+
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.collect.HashMultimap;
+
+/**
+ * Indexes the individuals by the city or the country of all their
+ * residence addresses. The values are compared case insensitive.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class ResidenceIndex extends AbstractIndividualIndex<String> {
+
+	private Field field = null;
+
+	/**
+	 *
+	 *
+	 * @param field The address field to index
+	 */
+	public ResidenceIndex(Field field) {
+		super(HashMultimap.<String, GedcomIndividual>create());
+		this.field = field;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	@Override
+	protected void collectKeys(GedcomIndividual individual, Set<String> keys) {
+		int count = individual.getNumberOfAddresses();
+		for (int i = 0; i < count; i++) {
+			String value = null;
+
+			switch (field) {
+			case CITY:
+				value = individual.getCity(i);
+				break;
+			case COUNTRY:
+				value = individual.getCountry(i);
+				break;
+			}
+
+			value = normalize(value);
+
+			if (value != null) {
+				keys.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Returns all the individuals which have an address with the given
+	 * city or country
+	 *
+	 * @param value
+	 * @return
+	 */
+	public Set<GedcomIndividual> getIndividuals(String value) {
+		return get(normalize(value));
+	}
+
+
+	/*************************************************************************
+	 *
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	public static enum Field {
+		CITY, COUNTRY;
+	}
+
+}
@@ -0,0 +1,96 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Collection;
+
+/**
+ * The american soundex encoding (one letter followed by three digits, for
+ * example "Robert" and "Rupert" are both encoded as R163). Characters other
+ * than the letters A-Z are ignored.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class SoundexEncoder implements PhoneticEncoder {
+
+	/** The codes of the letters A-Z. '0' for vowels, '-' for H and W which do not separate codes */
+	private static final char[] CODES = "01230120022455012623010202".toCharArray();
+
+	static {
+		CODES['H' - 'A'] = '-';
+		CODES['W' - 'A'] = '-';
+	}
+
+	@Override
+	public void encode(String name, Collection<String> codes) {
+		String code = encode(name);
+
+		if (code != null) {
+			codes.add(code);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param name
+	 * @return The soundex code, or <code>null</code> if the name does not contain
+	 * any letter
+	 */
+	public String encode(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		char[] code = new char[4];
+		int length = 0;
+		char previous = 0;
+
+		for (int i = 0; i < name.length() && length < 4; i++) {
+			char c = Character.toUpperCase(name.charAt(i));
+
+			if (c < 'A' || c > 'Z') {
+				continue;
+			}
+
+			char digit = CODES[c - 'A'];
+
+			if (length == 0) {
+				code[length++] = c;
+			} else if (digit == '-') {
+				//H and W do not separate letters with the same code
+				continue;
+			} else if (digit != '0' && digit != previous) {
+				code[length++] = digit;
+			}
+
+			previous = digit;
+		}
+
+		if (length == 0) {
+			return null;
+		}
+
+		while (length < 4) {
+			code[length++] = '0';
+		}
+
+		return new String(code);
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Set;
+
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.collect.HashMultimap;
+
+/**
+ * Indexes the individuals by the surnames of all their names. The surnames
+ * are compared case insensitive.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class SurnameIndex extends AbstractIndividualIndex<String> {
+
+	/**
+	 *
+	 */
+	public SurnameIndex() {
+		super(HashMultimap.<String, GedcomIndividual>create());
+	}
+
+	@Override
+	protected void collectKeys(GedcomIndividual individual, Set<String> keys) {
+		int count = individual.getNumberOfNames();
+		for (int i = 0; i < count; i++) {
+			String surname = normalize(individual.getSurname(i));
+
+			if (surname != null) {
+				keys.add(surname);
+			}
+		}
+	}
+
+	/**
+	 * Returns all the individuals which have a name with the given surname
+	 *
+	 * @param surname
+	 * @return
+	 */
+	public Set<GedcomIndividual> getIndividuals(String surname) {
+		return get(normalize(surname));
+	}
+
+}
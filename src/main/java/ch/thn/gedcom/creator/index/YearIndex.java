@@ -0,0 +1,127 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.index;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedMap;
+
+import ch.thn.gedcom.creator.GedcomDate;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+
+import com.google.common.collect.MultimapBuilder;
+
+/**
+ * Indexes the individuals by the year of their birth or death date. Individuals
+ * without a date, or with a date which can not be parsed, are not indexed.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class YearIndex extends AbstractIndividualIndex<Integer> {
+
+	private Event event = null;
+
+	/**
+	 *
+	 *
+	 * @param event The event which date is used
+	 */
+	public YearIndex(Event event) {
+		super(MultimapBuilder.treeKeys().hashSetValues().<Integer, GedcomIndividual>build());
+		this.event = event;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	@Override
+	protected void collectKeys(GedcomIndividual individual, Set<Integer> keys) {
+		GedcomDate date = null;
+
+		switch (event) {
+		case BIRTH:
+			date = individual.getParsedBirthDate();
+			break;
+		case DEATH:
+			date = individual.getParsedDeathDate();
+			break;
+		}
+
+		if (date != null && date.isParsed()) {
+			keys.add(date.getYear());
+		}
+	}
+
+	/**
+	 * Returns all the individuals with the event in the given year
+	 *
+	 * @param year
+	 * @return
+	 */
+	public Set<GedcomIndividual> getIndividuals(int year) {
+		return get(year);
+	}
+
+	/**
+	 * Returns all the individuals with the event between the given years (both inclusive)
+	 *
+	 * @param fromYear
+	 * @param toYear
+	 * @return
+	 */
+	public Set<GedcomIndividual> getIndividuals(int fromYear, int toYear) {
+		Set<GedcomIndividual> result = new HashSet<>();
+
+		if (fromYear > toYear) {
+			return result;
+		}
+
+		//The tree keys multimap provides a sorted map view
+		SortedMap<Integer, Collection<GedcomIndividual>> years =
+				(SortedMap<Integer, Collection<GedcomIndividual>>)getIndex().asMap();
+
+		SortedMap<Integer, Collection<GedcomIndividual>> range = toYear == Integer.MAX_VALUE
+				? years.tailMap(fromYear) : years.subMap(fromYear, toYear + 1);
+
+		for (Collection<GedcomIndividual> individuals : range.values()) {
+			result.addAll(individuals);
+		}
+
+		return result;
+	}
+
+
+	/*************************************************************************
+	 *
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	public static enum Event {
+		BIRTH, DEATH;
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.metrics;
+
+/**
+ * Receives the timings of the structure and storage operations. The default 
+ * is {@link #NOOP}, which does not even read the clock. See 
+ * {@link SimpleGedcomMetrics} for an implementation which collects counters 
+ * and latency histograms.<br />
+ * <br />
+ * An operation is measured with<br />
+ * <code>long start = metrics.start();<br />
+ * ...<br />
+ * metrics.stop(Operation.REMOVE, start);</code><br />
+ * <br />
+ * Implementations have to be thread safe.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface GedcomMetrics {
+	
+	/** Does not record anything */
+	public static final GedcomMetrics NOOP = new GedcomMetrics() {
+		
+		@Override
+		public long start() {
+			return 0;
+		}
+		
+		@Override
+		public void stop(Operation operation, long start) {
+			
+		}
+		
+		@Override
+		public void relationIndexSize(int size) {
+			
+		}
+	};
+	
+	
+	/**
+	 * The measured operations
+	 *
+	 */
+	public enum Operation {
+		/** Creating and setting lines of a structure */
+		CREATE_AND_SET, 
+		/** Resolving a path in the tree of a structure (cached paths are not counted) */
+		FOLLOW_PATH, 
+		/** Removing lines of a structure */
+		REMOVE, 
+		BUILD_FAMILY_RELATIONS, 
+		CLEANUP, 
+		/** Adding structures to a storage */
+		STORAGE_ADD, 
+		/** Removing structures from a storage */
+		STORAGE_REMOVE;
+	}
+	
+	/**
+	 * Marks the beginning of an operation
+	 * 
+	 * @return The start time which has to be given to {@link #stop(Operation, long)}
+	 */
+	public long start();
+	
+	/**
+	 * Marks the end of an operation
+	 * 
+	 * @param operation
+	 * @param start The value returned by {@link #start()}
+	 */
+	public void stop(Operation operation, long start);
+	
+	/**
+	 * Called after the family relations have been built
+	 * 
+	 * @param size The number of entries in the relation index of the storage
+	 */
+	public void relationIndexSize(int size);
+
+}
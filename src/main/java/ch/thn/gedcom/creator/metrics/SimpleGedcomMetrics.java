@@ -0,0 +1,194 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the number of calls, the total time and a latency histogram for 
+ * each operation. The histogram buckets have fixed upper bounds 
+ * (see {@link #getBucketBounds()}), so recording does not allocate and does not 
+ * lock.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class SimpleGedcomMetrics implements GedcomMetrics {
+	
+	/** The upper bounds (exclusive) of the histogram buckets in nanoseconds. 
+	 * The last bucket collects all the longer operations. */
+	private static final long[] BUCKET_BOUNDS = {
+		TimeUnit.MICROSECONDS.toNanos(1), 
+		TimeUnit.MICROSECONDS.toNanos(10), 
+		TimeUnit.MICROSECONDS.toNanos(100), 
+		TimeUnit.MILLISECONDS.toNanos(1), 
+		TimeUnit.MILLISECONDS.toNanos(10), 
+		TimeUnit.MILLISECONDS.toNanos(100), 
+		TimeUnit.SECONDS.toNanos(1)
+	};
+	
+	private final LongAdder[] counts;
+	private final LongAdder[] totalNanos;
+	private final LongAdder[][] histograms;
+	
+	private volatile int relationIndexSize = 0;
+	
+	/**
+	 * 
+	 */
+	public SimpleGedcomMetrics() {
+		int operations = Operation.values().length;
+		
+		counts = new LongAdder[operations];
+		totalNanos = new LongAdder[operations];
+		histograms = new LongAdder[operations][BUCKET_BOUNDS.length + 1];
+		
+		for (int i = 0; i < operations; i++) {
+			counts[i] = new LongAdder();
+			totalNanos[i] = new LongAdder();
+			
+			for (int j = 0; j < histograms[i].length; j++) {
+				histograms[i][j] = new LongAdder();
+			}
+		}
+	}
+	
+	@Override
+	public long start() {
+		return System.nanoTime();
+	}
+	
+	@Override
+	public void stop(Operation operation, long start) {
+		long nanos = System.nanoTime() - start;
+		int i = operation.ordinal();
+		
+		counts[i].increment();
+		totalNanos[i].add(nanos);
+		histograms[i][getBucket(nanos)].increment();
+	}
+	
+	@Override
+	public void relationIndexSize(int size) {
+		relationIndexSize = size;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param nanos
+	 * @return
+	 */
+	private static int getBucket(long nanos) {
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			if (nanos < BUCKET_BOUNDS[i]) {
+				return i;
+			}
+		}
+		
+		return BUCKET_BOUNDS.length;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param operation
+	 * @return The number of recorded operations
+	 */
+	public long getCount(Operation operation) {
+		return counts[operation.ordinal()].sum();
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param operation
+	 * @return The total time of all recorded operations in nanoseconds
+	 */
+	public long getTotalNanos(Operation operation) {
+		return totalNanos[operation.ordinal()].sum();
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @param operation
+	 * @return The number of operations in each bucket of {@link #getBucketBounds()}. 
+	 * The last entry contains the operations which took longer than the last bound.
+	 */
+	public long[] getHistogram(Operation operation) {
+		LongAdder[] histogram = histograms[operation.ordinal()];
+		long[] values = new long[histogram.length];
+		
+		for (int i = 0; i < histogram.length; i++) {
+			values[i] = histogram[i].sum();
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return A copy of the upper bounds (exclusive) of the histogram buckets in 
+	 * nanoseconds
+	 */
+	public static long[] getBucketBounds() {
+		return BUCKET_BOUNDS.clone();
+	}
+	
+	/**
+	 * 
+	 * 
+	 * @return The number of entries in the relation index after the last 
+	 * rebuild of the family relations
+	 */
+	public int getRelationIndexSize() {
+		return relationIndexSize;
+	}
+	
+	/**
+	 * Resets all counters and histograms
+	 * 
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i].reset();
+			totalNanos[i].reset();
+			
+			for (LongAdder bucket : histograms[i]) {
+				bucket.reset();
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		
+		for (Operation operation : Operation.values()) {
+			sb.append(operation).append(": count=").append(getCount(operation))
+				.append(", totalNanos=").append(getTotalNanos(operation)).append("\n");
+		}
+		
+		sb.append("relationIndexSize=").append(relationIndexSize);
+		
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,268 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.pipeline;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ch.thn.gedcom.creator.GedcomCreatorError;
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+
+/**
+ * Builds structures from source rows with several worker threads and passes 
+ * them to a single {@link RecordSink} (for example a {@link StorageRecordSink}). 
+ * The rows are read from the source only as fast as the structures are built 
+ * and consumed: a row is only read if less than the maximum number of records 
+ * are in flight (read but not yet accepted by the sink). This keeps the memory 
+ * use bounded, even if the source delivers the rows much faster than they 
+ * can be processed.<br />
+ * <br />
+ * The structures reach the sink in no particular order.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ * @param <T> The type of the source rows
+ */
+public class GedcomRecordPipeline<T> {
+	
+	/** Marks the end of the rows or structures in a queue */
+	private static final Object END = new Object();
+	
+	private RecordMapper<T> mapper = null;
+	private RecordSink sink = null;
+	private int workers = 0;
+	private int maxInFlight = 0;
+	
+	/**
+	 * 
+	 * 
+	 * @param mapper Builds the structures
+	 * @param sink Receives the structures
+	 * @param workers The number of threads which build the structures
+	 * @param maxInFlight The maximum number of records which have been read 
+	 * from the source but not yet been accepted by the sink
+	 */
+	public GedcomRecordPipeline(RecordMapper<T> mapper, RecordSink sink, 
+			int workers, int maxInFlight) {
+		if (workers < 1 || maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one worker and one record in flight are needed");
+		}
+		
+		this.mapper = mapper;
+		this.sink = sink;
+		this.workers = workers;
+		this.maxInFlight = maxInFlight;
+	}
+	
+	/**
+	 * Reads all the rows from the source (in the calling thread) and waits 
+	 * until all the structures have been passed to the sink. If the source, 
+	 * the mapper or the sink fail, no more rows are read and the failure 
+	 * is thrown after the pipeline has been stopped.
+	 * 
+	 * @param source
+	 * @return The number of structures which have been passed to the sink
+	 * @throws GedcomCreatorError If a stage failed or the calling thread 
+	 * has been interrupted
+	 */
+	public long run(Iterator<? extends T> source) {
+		final Semaphore inFlight = new Semaphore(maxInFlight);
+		//Each row holds a permit, the additional space is for the end markers
+		final BlockingQueue<Object> rows = new ArrayBlockingQueue<>(maxInFlight + workers);
+		final BlockingQueue<Object> structures = new ArrayBlockingQueue<>(maxInFlight + 1);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final AtomicInteger runningWorkers = new AtomicInteger(workers);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(workers + 1);
+		
+		try {
+			for (int i = 0; i < workers; i++) {
+				executor.execute(new Worker(rows, structures, inFlight, failure, runningWorkers));
+			}
+			
+			Future<Long> consumer = executor.submit(new Consumer(structures, inFlight, failure));
+			
+			try {
+				while (failure.get() == null && source.hasNext()) {
+					inFlight.acquire();
+					rows.put(source.next());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure.compareAndSet(null, e);
+				executor.shutdownNow();
+			} catch (RuntimeException | Error e) {
+				failure.compareAndSet(null, e);
+			}
+			
+			if (!executor.isShutdown()) {
+				for (int i = 0; i < workers; i++) {
+					//There is always space for the end markers
+					rows.add(END);
+				}
+			}
+			
+			long count = 0;
+			
+			try {
+				count = consumer.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure.compareAndSet(null, e);
+			} catch (ExecutionException e) {
+				failure.compareAndSet(null, e.getCause());
+			}
+			
+			if (failure.get() != null) {
+				throw new GedcomCreatorError("The record pipeline failed: " + failure.get(), failure.get());
+			}
+			
+			return count;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	
+	/*************************************************************************
+	 * Builds the structures from the rows
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class Worker implements Runnable {
+		
+		private BlockingQueue<Object> rows = null;
+		private BlockingQueue<Object> structures = null;
+		private Semaphore inFlight = null;
+		private AtomicReference<Throwable> failure = null;
+		private AtomicInteger runningWorkers = null;
+		
+		/**
+		 * 
+		 * 
+		 * @param rows
+		 * @param structures
+		 * @param inFlight
+		 * @param failure
+		 * @param runningWorkers
+		 */
+		public Worker(BlockingQueue<Object> rows, BlockingQueue<Object> structures, 
+				Semaphore inFlight, AtomicReference<Throwable> failure, AtomicInteger runningWorkers) {
+			this.rows = rows;
+			this.structures = structures;
+			this.inFlight = inFlight;
+			this.failure = failure;
+			this.runningWorkers = runningWorkers;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public void run() {
+			try {
+				Object row = null;
+				while ((row = rows.take()) != END) {
+					AbstractGedcomStructure structure = null;
+					
+					//After a failure the remaining rows are only drained
+					if (failure.get() == null) {
+						try {
+							structure = mapper.map((T)row);
+						} catch (RuntimeException | Error e) {
+							failure.compareAndSet(null, e);
+						}
+					}
+					
+					if (structure == null) {
+						inFlight.release();
+					} else {
+						structures.put(structure);
+					}
+				}
+				
+				//The last worker tells the consumer that there are no more structures
+				if (runningWorkers.decrementAndGet() == 0) {
+					structures.put(END);
+				}
+			} catch (InterruptedException e) {
+				//Pipeline has been stopped
+				failure.compareAndSet(null, e);
+			}
+		}
+	}
+	
+	
+	/*************************************************************************
+	 * Passes the structures to the sink
+	 *
+	 *
+	 * @author Thomas Naeff (github.com/thnaeff)
+	 *
+	 */
+	private class Consumer implements Callable<Long> {
+		
+		private BlockingQueue<Object> structures = null;
+		private Semaphore inFlight = null;
+		private AtomicReference<Throwable> failure = null;
+		
+		/**
+		 * 
+		 * 
+		 * @param structures
+		 * @param inFlight
+		 * @param failure
+		 */
+		public Consumer(BlockingQueue<Object> structures, Semaphore inFlight, 
+				AtomicReference<Throwable> failure) {
+			this.structures = structures;
+			this.inFlight = inFlight;
+			this.failure = failure;
+		}
+		
+		@Override
+		public Long call() throws InterruptedException {
+			long count = 0;
+			
+			Object structure = null;
+			while ((structure = structures.take()) != END) {
+				try {
+					if (failure.get() == null) {
+						sink.accept((AbstractGedcomStructure)structure);
+						count++;
+					}
+				} catch (RuntimeException | Error e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					inFlight.release();
+				}
+			}
+			
+			return count;
+		}
+	}
+
+}
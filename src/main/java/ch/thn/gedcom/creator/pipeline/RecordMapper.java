@@ -0,0 +1,39 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.pipeline;
+
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+
+/**
+ * Builds a structure from a source row. Called by several worker threads 
+ * at the same time, thus implementations have to be thread safe.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ * @param <T> The type of the source rows
+ */
+public interface RecordMapper<T> {
+	
+	/**
+	 * 
+	 * 
+	 * @param row
+	 * @return The structure, or <code>null</code> to skip the row
+	 */
+	public AbstractGedcomStructure map(T row);
+
+}
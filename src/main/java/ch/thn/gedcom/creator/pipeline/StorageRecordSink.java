@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.pipeline;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomCreatorUtil;
+import ch.thn.gedcom.creator.structures.AbstractGedcomStructure;
+
+/**
+ * Adds the structures to a structure storage, based on their type
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class StorageRecordSink implements RecordSink {
+	
+	private GedcomCreatorStructureStorage structureStorage = null;
+	
+	/**
+	 * 
+	 * 
+	 * @param structureStorage
+	 */
+	public StorageRecordSink(GedcomCreatorStructureStorage structureStorage) {
+		this.structureStorage = structureStorage;
+	}
+	
+	@Override
+	public void accept(AbstractGedcomStructure structure) {
+		GedcomCreatorUtil.addStructureBasedOnType(structureStorage, structure, null);
+	}
+
+}
@@ -16,16 +16,21 @@
  */
 package ch.thn.gedcom.creator.structures;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 
 import ch.thn.datatree.TreeIterator;
 import ch.thn.gedcom.creator.GedcomCreatorError;
+import ch.thn.gedcom.creator.GedcomStoreContext;
+import ch.thn.gedcom.creator.metrics.GedcomMetrics;
+import ch.thn.gedcom.creator.metrics.GedcomMetrics.Operation;
 import ch.thn.gedcom.data.GedcomLine;
 import ch.thn.gedcom.data.GedcomNode;
 import ch.thn.gedcom.data.GedcomNode.PathStepPieces;
 import ch.thn.gedcom.data.GedcomTagLine;
 import ch.thn.gedcom.data.GedcomTree;
 import ch.thn.gedcom.store.GedcomStore;
+import ch.thn.stringutil.StringUtil;
 
 /**
  * @author Thomas Naeff (github.com/thnaeff)
@@ -39,9 +44,28 @@ public abstract class AbstractGedcomStructure {
   public static final String INDIVIDUAL_RECORD = "INDIVIDUAL_RECORD";
   public static final String SUBMITTER_RECORD = "SUBMITTER_RECORD";
 
+  /** An empty path which points to the base node itself */
+  protected static final String[] BASE_PATH = new String[0];
+
   private GedcomNode treeHead = null;
   protected GedcomNode baseNode = null;
 
+  /** No nodes resolved yet */
+  private static final ResolvedNode[] NO_RESOLVED_NODES = new ResolvedNode[0];
+
+  /**
+   * The nodes resolved through {@link #followCachedPath(String[])}, keyed by
+   * path array identity. The array is never modified, a new array is published
+   * for each change, thus the cache can be read by several threads at once.
+   */
+  private volatile ResolvedNode[] resolvedNodes = NO_RESOLVED_NODES;
+
+  /** Only created when the first listener is added */
+  private ArrayList<GedcomStructureListener> listeners = null;
+
+  /** The metrics of all structures */
+  private static volatile GedcomMetrics metrics = GedcomMetrics.NOOP;
+
   private boolean v55 = false;
 
   /**
@@ -52,8 +76,21 @@ public abstract class AbstractGedcomStructure {
    * @param basePath
    */
   public AbstractGedcomStructure(GedcomStore store, String structureName, String... basePath) {
+    this(new GedcomStoreContext(store), structureName, basePath);
+  }
 
-    v55 = store.getFileVersion().equals("5.5");
+  /**
+   * Creates a new gedcom node from the store context using the given structure
+   * name. Concurrent calls with the same context have to be synchronized by
+   * the caller, see {@link GedcomStoreContext}.
+   *
+   * @param store
+   * @param structureName
+   * @param basePath
+   */
+  public AbstractGedcomStructure(GedcomStoreContext store, String structureName, String... basePath) {
+
+    v55 = store.isV55();
 
     treeHead = store.getGedcomTree(structureName);
     //Do not add mandatory lines. Just create them when needed
@@ -74,6 +111,23 @@ public abstract class AbstractGedcomStructure {
    */
   public AbstractGedcomStructure(GedcomStore store, String structureName,
       GedcomTree gedcomHeadNode, String... basePath) {
+    this(new GedcomStoreContext(store), structureName, gedcomHeadNode, basePath);
+  }
+
+  /**
+   * Uses the given gedcom base node and verifies it if it matches the given
+   * structure name
+   *
+   * @param store
+   * @param structureName
+   * @param gedcomHeadNode The head node of a gedcom tree is a {@link GedcomTree}
+   * object
+   * @param basePath
+   */
+  public AbstractGedcomStructure(GedcomStoreContext store, String structureName,
+      GedcomTree gedcomHeadNode, String... basePath) {
+    v55 = store.isV55();
+
     this.baseNode = gedcomHeadNode.followPathCreate(basePath);
 
     String structureName2 = gedcomHeadNode.getStoreBlock().getStoreStructure().getStructureName();
@@ -88,6 +142,25 @@ public abstract class AbstractGedcomStructure {
 
   }
 
+  /**
+   * Sets the metrics which record the operations of all structures
+   * (create and set, path resolution and remove).
+   *
+   * @param metrics
+   */
+  public static void setMetrics(GedcomMetrics metrics) {
+    AbstractGedcomStructure.metrics = (metrics == null ? GedcomMetrics.NOOP : metrics);
+  }
+
+  /**
+   *
+   *
+   * @return
+   */
+  public static GedcomMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * Returns the structure name which matches the used structure
    *
@@ -140,7 +213,166 @@ public abstract class AbstractGedcomStructure {
    * @return
    */
   protected GedcomNode followPath(GedcomNode node, String... path) {
-    return node.followPath(path);
+    long start = metrics.start();
+    GedcomNode n = node.followPath(path);
+    metrics.stop(Operation.FOLLOW_PATH, start);
+    return n;
+  }
+
+  /**
+   * Follows the given path starting at the base node and keeps the resolved
+   * node, so that following the same path again does not have to walk the
+   * path steps again. The path array itself is used as key (compared by identity),
+   * therefore this method should only be used with constant path arrays.<br />
+   * <br />
+   * The cached nodes are invalidated when lines are added or removed through
+   * {@link #createAndSet(GedcomData...)} or {@link #remove(String...)}. If the
+   * tree is modified directly (through {@link #getTree()}),
+   * {@link #clearResolvedNodes()} has to be called.<br />
+   * <br />
+   * Several threads can read the same structure at once (the cache is copied
+   * on write). Modifications of the structure still need exclusive access.
+   *
+   * @param path
+   * @return
+   */
+  protected GedcomNode followCachedPath(String[] path) {
+    ResolvedNode[] resolved = resolvedNodes;
+
+    for (ResolvedNode resolvedNode : resolved) {
+      if (resolvedNode.path == path) {
+        return resolvedNode.node;
+      }
+    }
+
+    GedcomNode node = followPath(baseNode, path);
+
+    //Only existing nodes are cached. A path which does not exist yet has to be
+    //followed again since it might have been created in the meantime.
+    if (node != null) {
+      //If another reader published a node at the same time, one of the two
+      //nodes is lost and resolved again with the next call
+      ResolvedNode[] added = Arrays.copyOf(resolved, resolved.length + 1);
+      added[resolved.length] = new ResolvedNode(path, node);
+      resolvedNodes = added;
+    }
+
+    return node;
+  }
+
+  /**
+   * Retrieves the value at the given constant path, starting at the base node.
+   * See {@link #followCachedPath(String[])}.
+   *
+   * @param path
+   * @return
+   */
+  protected String getCachedValue(String[] path) {
+    GedcomNode n = followCachedPath(path);
+
+    if (n == null) {
+      return null;
+    }
+
+    return n.getTagLineValue();
+  }
+
+  /**
+   * Retrieves the xref at the given constant path, starting at the base node.
+   * See {@link #followCachedPath(String[])}.
+   *
+   * @param path
+   * @return
+   */
+  protected String getCachedXRef(String[] path) {
+    GedcomNode n = followCachedPath(path);
+
+    if (n == null) {
+      return null;
+    }
+
+    return n.getTagLineXRef();
+  }
+
+  /**
+   * Clears all the nodes which have been cached by {@link #followCachedPath(String[])}.
+   * Only needed if the tree has been modified directly.
+   *
+   */
+  public void clearResolvedNodes() {
+    resolvedNodes = NO_RESOLVED_NODES;
+  }
+
+  /**
+   * Removes the cached nodes which might be affected by adding or removing
+   * lines at the given path. All cached paths which start with the same
+   * line (ignoring the variation and index options) are removed, since adding
+   * or removing a line can shift the indexes of its siblings.
+   *
+   * @param path The path which has been modified
+   */
+  private void invalidateResolvedNodes(String[] path) {
+    ResolvedNode[] resolved = resolvedNodes;
+
+    if (resolved.length == 0) {
+      return;
+    }
+
+    String line = getLineName(path);
+
+    if (line == null) {
+      resolvedNodes = NO_RESOLVED_NODES;
+      return;
+    }
+
+    ResolvedNode[] kept = new ResolvedNode[resolved.length];
+    int count = 0;
+    for (ResolvedNode resolvedNode : resolved) {
+      String[] cachedPath = resolvedNode.path;
+
+      //The base node itself can not be removed
+      if (cachedPath.length == 0) {
+        kept[count++] = resolvedNode;
+        continue;
+      }
+
+      String cachedLine = getLineName(cachedPath);
+
+      if (cachedLine != null && !cachedLine.equals(line)) {
+        kept[count++] = resolvedNode;
+      }
+    }
+
+    resolvedNodes = (count == 0 ? NO_RESOLVED_NODES : Arrays.copyOf(kept, count));
+  }
+
+  /**
+   * Returns the tag or structure name of the first path step, without any
+   * variation or index options.
+   *
+   * @param path
+   * @return The line name, or <code>null</code> if the path is empty or
+   * starts with a <code>null</code> step
+   */
+  private static String getLineName(String[] path) {
+    if (path.length == 0 || path[0] == null) {
+      return null;
+    }
+
+    String step = path[0];
+    int end = step.length();
+
+    int variation = step.indexOf(';');
+    if (variation != -1) {
+      end = variation;
+    }
+
+    int option = step.indexOf(GedcomNode.PATH_OPTION_DELIMITER);
+    if (option != -1 && option < end) {
+      end = option;
+    }
+
+    return step.substring(0, end);
   }
 
   /**
@@ -161,7 +393,7 @@ public abstract class AbstractGedcomStructure {
    * @return
    */
   protected String getValue(GedcomNode node, String... path) {
-    GedcomNode n = node.followPath(path);
+    GedcomNode n = followPath(node, path);
 
     if (n == null) {
       return null;
@@ -188,7 +420,7 @@ public abstract class AbstractGedcomStructure {
    * @return
    */
   protected String getXRef(GedcomNode node, String... path) {
-    GedcomNode n = node.followPath(path);
+    GedcomNode n = followPath(node, path);
 
     if (n == null) {
       return null;
@@ -209,6 +441,22 @@ public abstract class AbstractGedcomStructure {
    * the values/xrefs have been set. <code>false</code> if creating a path failed
    */
   protected boolean createAndSet(GedcomData... data) {
+    long start = metrics.start();
+
+    try {
+      return createAndSetData(data);
+    } finally {
+      metrics.stop(Operation.CREATE_AND_SET, start);
+    }
+  }
+
+  /**
+   * See {@link #createAndSet(GedcomData...)}
+   *
+   * @param data
+   * @return
+   */
+  private boolean createAndSetData(GedcomData... data) {
 
     //Try to create all the paths
     for (int i = 0; i < data.length; i++) {
@@ -235,6 +483,7 @@ public abstract class AbstractGedcomStructure {
       if (d.add) {
         //Add
         d.followedNode = node.createPathEnd(d.path);
+        invalidateResolvedNodes(getRootData(d).path);
       } else {
         //Set
         d.followedNode = node.followPathCreate(d.path);
@@ -265,6 +514,23 @@ public abstract class AbstractGedcomStructure {
       }
     }
 
+    if (listeners != null) {
+      String previousLine = null;
+      for (int i = 0; i < data.length; i++) {
+        if (data[i] == null) {
+          continue;
+        }
+
+        //Data which follows previous data is mostly on the same line
+        String line = getLineName(getRootData(data[i]).path);
+        if (line == null || !line.equals(previousLine)) {
+          fireStructureModified(line);
+        }
+
+        previousLine = line;
+      }
+    }
+
     return true;
   }
 
@@ -290,15 +556,87 @@ public abstract class AbstractGedcomStructure {
    * @return
    */
   protected boolean remove(GedcomNode node, String... path) {
-    node = node.removePath(path);
+    long start = metrics.start();
+    GedcomNode removed = node.removePath(path);
+    metrics.stop(Operation.REMOVE, start);
 
-    if (node == null) {
+    if (removed == null) {
       return false;
     }
 
+    if (node == baseNode) {
+      invalidateResolvedNodes(path);
+      fireStructureModified(getLineName(path));
+    } else {
+      //The path does not start at the base node, thus it is unknown which
+      //of the cached paths are affected
+      clearResolvedNodes();
+      fireStructureModified(null);
+    }
+
     return true;
   }
 
+  /**
+   * Adds a listener which is notified when lines are set, added or removed
+   * through the methods of this structure. Direct modifications of the tree
+   * are not detected.
+   *
+   * @param listener
+   */
+  public void addStructureListener(GedcomStructureListener listener) {
+    if (listeners == null) {
+      listeners = new ArrayList<>(2);
+    }
+
+    listeners.add(listener);
+  }
+
+  /**
+   *
+   *
+   * @param listener
+   * @return
+   */
+  public boolean removeStructureListener(GedcomStructureListener listener) {
+    if (listeners == null) {
+      return false;
+    }
+
+    return listeners.remove(listener);
+  }
+
+  /**
+   *
+   *
+   * @param lineName
+   */
+  private void fireStructureModified(String lineName) {
+    if (listeners == null) {
+      return;
+    }
+
+    //Copy the listeners, since a listener might remove itself
+    for (GedcomStructureListener listener : listeners.toArray(
+        new GedcomStructureListener[listeners.size()])) {
+      listener.structureModified(this, lineName);
+    }
+  }
+
+  /**
+   * Returns the data at the beginning of the chain of followed data.
+   *
+   * @param data
+   * @return
+   */
+  private static GedcomData getRootData(GedcomData data) {
+    while (data.followPrevious != null) {
+      data = data.followPrevious;
+    }
+
+    return data;
+  }
+
   /**
    * Returns the index of the given value among the child lines with the given
    * tag. Only tag lines are considered.
@@ -331,7 +669,7 @@ public abstract class AbstractGedcomStructure {
    */
   protected int indexOfChildValue(GedcomNode node, String value, String tag,
       int offset, String... path) {
-    GedcomNode n = node.followPath(path);
+    GedcomNode n = followPath(node, path);
 
     //Use the iterator for the sub-tree of the current node since values could
     //be nested under some structure lines. For example:
@@ -392,7 +730,7 @@ public abstract class AbstractGedcomStructure {
    */
   protected int indexOfChildXRef(GedcomNode node, String xref, String tag,
       int offset, String... path) {
-    GedcomNode n = node.followPath(path);
+    GedcomNode n = followPath(node, path);
 
     //Use the iterator for the sub-tree of the current node since xrefs could
     //be nested under some structure lines. For example:
@@ -422,6 +760,111 @@ public abstract class AbstractGedcomStructure {
     return -1;
   }
 
+  /**
+   * Returns the index of the link to the given XRef among the structure lines
+   * with the given structure name. The XRef of such a structure line is the
+   * first line with the given tag which follows it, for example the FAMS line
+   * of a SPOUSE_TO_FAMILY_LINK. Lines with the same tag outside of these
+   * structure lines are not considered (like the FAMC lines of events). The
+   * lines are visited in a single pass over the tree.
+   *
+   * @param xref The XRef to look for. <code>null</code> matches a link line
+   * without XRef.
+   * @param structureName The structure lines which hold the links
+   * @param tag The tag of the link lines
+   * @return The index if the XRef has been found, or <code>-1</code> if the
+   * XRef has not been found
+   */
+  protected int indexOfLinkXRef(String xref, String structureName, String tag) {
+    TreeIterator<GedcomNode> iterator = baseNode.iterator(true);
+    int index = -1;
+    boolean inLink = false;
+    while (iterator.hasNext()) {
+      GedcomLine line = iterator.next().getNodeValue();
+      if (line.isStructureLine()) {
+        if (line.getAsStructureLine().getStructureName().equals(structureName)) {
+          index++;
+          inLink = true;
+        }
+      } else if (inLink && line.isTagLine()) {
+        GedcomTagLine tagLine = line.getAsTagLine();
+
+        //Only the first line with the tag is the link of the structure line
+        if (tagLine.getTag().equals(tag)) {
+          if (StringUtil.equals(tagLine.getXRef(), xref)) {
+            return index;
+          }
+
+          inLink = false;
+        }
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Rewrites the XRefs of all the lines of this structure (including the ID
+   * of the structure itself) in a single pass over the tree. The cached nodes
+   * stay valid since no lines are added or removed, and the structure listeners
+   * are not notified.<br />
+   * <br />
+   * Each structure has its own tree, therefore different structures can be
+   * remapped concurrently as long as the mapper is thread safe.
+   *
+   * @param mapper
+   * @return The number of XRefs which have been changed
+   */
+  public int remapXRefs(GedcomXRefMapper mapper) {
+    int count = 0;
+
+    if (remapXRef(baseNode, mapper)) {
+      count++;
+    }
+
+    TreeIterator<GedcomNode> iterator = baseNode.iterator(true);
+    while (iterator.hasNext()) {
+      GedcomNode node = iterator.next();
+
+      if (node != baseNode && remapXRef(node, mapper)) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   *
+   *
+   * @param node
+   * @param mapper
+   * @return <code>true</code> if the XRef of the node has been changed
+   */
+  private static boolean remapXRef(GedcomNode node, GedcomXRefMapper mapper) {
+    GedcomLine line = node.getNodeValue();
+
+    if (!line.isTagLine()) {
+      return false;
+    }
+
+    GedcomTagLine tagLine = line.getAsTagLine();
+    String xref = tagLine.getXRef();
+
+    if (xref == null || xref.length() == 0) {
+      return false;
+    }
+
+    String newXRef = mapper.map(tagLine.getTag(), xref);
+
+    if (newXRef == null || newXRef.equals(xref)) {
+      return false;
+    }
+
+    node.setTagLineXRef(newXRef);
+    return true;
+  }
+
   /**
    *
    *
@@ -556,7 +999,7 @@ public abstract class AbstractGedcomStructure {
       String[] path1 = new String[keyCountPath.length - 1];
       System.arraycopy(keyCountPath, 0, path1, 0, keyCountPath.length - 2);
 
-      node = n.followPath(path1);
+      node = followPath(n, path1);
     } else if (keyCountPath.length == 1) {
       node = this.baseNode;
     }
@@ -723,4 +1166,28 @@ public abstract class AbstractGedcomStructure {
   }
 
 
+  /*************************************************************************
+   * A path and the node it resolves to. Immutable, so that it can be shared
+   * between the readers of the cache.
+   *
+   * @author Thomas Naeff (github.com/thnaeff)
+   *
+   */
+  private static final class ResolvedNode {
+    private final String[] path;
+    private final GedcomNode node;
+
+    /**
+     *
+     *
+     * @param path
+     * @param node
+     */
+    private ResolvedNode(String[] path, GedcomNode node) {
+      this.path = path;
+      this.node = node;
+    }
+  }
+
+
 }
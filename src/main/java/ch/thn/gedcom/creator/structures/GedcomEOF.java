@@ -16,6 +16,7 @@
  */
 package ch.thn.gedcom.creator.structures;
 
+import ch.thn.gedcom.creator.GedcomStoreContext;
 import ch.thn.gedcom.data.GedcomTree;
 import ch.thn.gedcom.store.GedcomStore;
 
@@ -32,6 +33,15 @@ public class GedcomEOF extends AbstractGedcomStructure {
 	 * @param store
 	 */
 	public GedcomEOF(GedcomStore store) {
+		this(new GedcomStoreContext(store));
+	}
+	
+	/**
+	 * A new {@link AbstractGedcomStructure#END_OF_FILE} with the given ID
+	 * 
+	 * @param store The wrapped store, see {@link GedcomStoreContext}
+	 */
+	public GedcomEOF(GedcomStoreContext store) {
 		super(store, END_OF_FILE);
 		
 		createAndSet(new GedcomDataEmpty(false, "TRLR"));
@@ -45,6 +55,17 @@ public class GedcomEOF extends AbstractGedcomStructure {
 	 * @param gedcomHeadNode
 	 */
 	public GedcomEOF(GedcomStore store, GedcomTree gedcomHeadNode) {
+		this(new GedcomStoreContext(store), gedcomHeadNode);
+	}
+	
+	/**
+	 * Creates a new individual using the given gedcom head node ({@link GedcomTree}) 
+	 * which has to be a {@link AbstractGedcomStructure#END_OF_FILE} structure.
+	 * 
+	 * @param store
+	 * @param gedcomHeadNode
+	 */
+	public GedcomEOF(GedcomStoreContext store, GedcomTree gedcomHeadNode) {
 		super(store, END_OF_FILE, gedcomHeadNode, "TRLR");
 	}
 	
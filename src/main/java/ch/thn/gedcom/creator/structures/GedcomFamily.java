@@ -20,11 +20,12 @@ import java.util.LinkedList;
 import java.util.List;
 
 import ch.thn.gedcom.creator.GedcomCreatorError;
+import ch.thn.gedcom.creator.GedcomDate;
 import ch.thn.gedcom.creator.GedcomEnums.YesNo;
+import ch.thn.gedcom.creator.GedcomStoreContext;
 import ch.thn.gedcom.data.GedcomNode;
 import ch.thn.gedcom.data.GedcomTree;
 import ch.thn.gedcom.store.GedcomStore;
-import ch.thn.stringutil.StringUtil;
 
 
 /**
@@ -33,6 +34,24 @@ import ch.thn.stringutil.StringUtil;
  */
 public class GedcomFamily extends AbstractGedcomStructure {
 
+  //The paths of the frequently used getters. They are kept as constants so that
+  //no path array has to be created for each call and so that they can be used as
+  //keys for the resolved node cache. The arrays must not be modified.
+  private static final String[] HUSBAND_PATH = {"HUSB"};
+  private static final String[] WIFE_PATH = {"WIFE"};
+  private static final String[] MARRIED_PATH = {"FAMILY_EVENT_STRUCTURE;MARR", "MARR"};
+  private static final String[] MARRIAGE_DATE_PATH = {"FAMILY_EVENT_STRUCTURE;MARR", "MARR",
+      "FAMILY_EVENT_DETAIL", "EVENT_DETAIL", "DATE"};
+  private static final String[] MARRIAGE_DATE_PATH_V55 = {"FAMILY_EVENT_STRUCTURE;MARR", "MARR",
+      null, "EVENT_DETAIL", "DATE"};
+  private static final String[] DIVORCED_PATH = {"FAMILY_EVENT_STRUCTURE;DIV", "DIV"};
+  private static final String[] DIVORCE_DATE_PATH = {"FAMILY_EVENT_STRUCTURE;DIV", "DIV",
+      "FAMILY_EVENT_DETAIL", "EVENT_DETAIL", "DATE"};
+  private static final String[] DIVORCE_DATE_PATH_V55 = {"FAMILY_EVENT_STRUCTURE;DIV", "DIV",
+      null, "EVENT_DETAIL", "DATE"};
+
+  private GedcomDate parsedMarriageDate = null;
+  private GedcomDate parsedDivorceDate = null;
 
   /**
    * A new {@link AbstractGedcomStructure#FAM_RECORD} with the given ID
@@ -41,6 +60,16 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @param id
    */
   public GedcomFamily(GedcomStore store, String id) {
+    this(new GedcomStoreContext(store), id);
+  }
+
+  /**
+   * A new {@link AbstractGedcomStructure#FAM_RECORD} with the given ID
+   *
+   * @param store The wrapped store, see {@link GedcomStoreContext}
+   * @param id
+   */
+  public GedcomFamily(GedcomStoreContext store, String id) {
     super(store, FAM_RECORD, "FAM");
 
     if (!setId(id)) {
@@ -57,6 +86,17 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @param gedcomHeadNode
    */
   public GedcomFamily(GedcomStore store, GedcomTree gedcomHeadNode) {
+    this(new GedcomStoreContext(store), gedcomHeadNode);
+  }
+
+  /**
+   * Creates a new individual using the given gedcom head node ({@link GedcomTree})
+   * which has to be a {@link AbstractGedcomStructure#FAM_RECORD} structure.
+   *
+   * @param store
+   * @param gedcomHeadNode
+   */
+  public GedcomFamily(GedcomStoreContext store, GedcomTree gedcomHeadNode) {
     super(store, FAM_RECORD, gedcomHeadNode, "FAM");
   }
 
@@ -86,7 +126,7 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public String getId() {
-    return getXRef();
+    return getCachedXRef(BASE_PATH);
   }
 
   /**
@@ -106,7 +146,7 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public String getHusbandLink() {
-    return getXRef("HUSB");
+    return getCachedXRef(HUSBAND_PATH);
   }
 
   /**
@@ -135,7 +175,7 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public String getWifeLink() {
-    return getXRef("WIFE");
+    return getCachedXRef(WIFE_PATH);
   }
 
   /**
@@ -193,20 +233,20 @@ public class GedcomFamily extends AbstractGedcomStructure {
     return result;
   }
 
-  //	/**
-  //	 * Returns the index of the child link among all child links.<br />
-  //	 * <br />
-  //	 * <b><i>Hint</i></b>: Only use this method if very few indexes are needed.
-  //	 * If many indexes are needed or if this method would be called repeatedly,
-  //	 * use {@link #getChildLinks()} to first collect a list of all the child links
-  //	 * and then use that list to determine the index (better performance).
-  //	 *
-  //	 * @param childId
-  //	 * @return
-  //	 */
-  //	public int indexOfChildLink(String childId) {
-  //		return indexOfChildXRef(childId, "CHIL");
-  //	}
+  /**
+   * Returns the index of the child link among all child links.<br />
+   * <br />
+   * <b><i>Hint</i></b>: Only use this method if very few indexes are needed.
+   * If many indexes are needed or if this method would be called repeatedly,
+   * use {@link #getChildLinks()} to first collect a list of all the child links
+   * and then use that list to determine the index (better performance).
+   *
+   * @param childId
+   * @return The index, or <code>-1</code> if the child is not linked
+   */
+  public int indexOfChildLink(String childId) {
+    return indexOfChildXRef(childId, "CHIL");
+  }
 
   /**
    *
@@ -225,13 +265,8 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public boolean removeChildLink(String childId) {
-    int count = getNumberOfChildren();
-    while (count > 0) {
-      if (StringUtil.equals(getChildLink(--count), childId)) {
-        return removeChildLink(count);
-      }
-    }
-    return false;
+    int index = indexOfChildLink(childId);
+    return index >= 0 && removeChildLink(index);
   }
 
   /**
@@ -266,7 +301,7 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public boolean isMarried() {
-    return YesNo.YES.getValue().equals(getValue("FAMILY_EVENT_STRUCTURE;MARR", "MARR"));
+    return YesNo.fromValue(getCachedValue(MARRIED_PATH)) == YesNo.YES;
   }
 
   /**
@@ -284,7 +319,18 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public String getMarriageDate() {
-    return getValue("FAMILY_EVENT_STRUCTURE;MARR", "MARR", !isV55() ? "FAMILY_EVENT_DETAIL" : null, "EVENT_DETAIL", "DATE");
+    return getCachedValue(isV55() ? MARRIAGE_DATE_PATH_V55 : MARRIAGE_DATE_PATH);
+  }
+
+  /**
+   * Returns the parsed marriage date. The parsed date is kept and the date is only
+   * parsed again if its value has changed.
+   *
+   * @return The parsed date, or <code>null</code> if there is no marriage date
+   */
+  public GedcomDate getParsedMarriageDate() {
+    parsedMarriageDate = GedcomDate.parse(getMarriageDate(), parsedMarriageDate);
+    return parsedMarriageDate;
   }
 
   /**
@@ -320,7 +366,7 @@ public class GedcomFamily extends AbstractGedcomStructure {
    */
   public boolean isDivorced() {
     //Since the DIV tag does not have a value field, just check if the tag is there
-    return getBaseNode().followPath("FAMILY_EVENT_STRUCTURE;DIV", "DIV") != null;
+    return followCachedPath(DIVORCED_PATH) != null;
   }
 
   /**
@@ -338,7 +384,18 @@ public class GedcomFamily extends AbstractGedcomStructure {
    * @return
    */
   public String getDivorceDate() {
-    return getValue("FAMILY_EVENT_STRUCTURE;DIV", "DIV", !isV55() ? "FAMILY_EVENT_DETAIL" : null, "EVENT_DETAIL", "DATE");
+    return getCachedValue(isV55() ? DIVORCE_DATE_PATH_V55 : DIVORCE_DATE_PATH);
+  }
+
+  /**
+   * Returns the parsed divorce date. The parsed date is kept and the date is only
+   * parsed again if its value has changed.
+   *
+   * @return The parsed date, or <code>null</code> if there is no divorce date
+   */
+  public GedcomDate getParsedDivorceDate() {
+    parsedDivorceDate = GedcomDate.parse(getDivorceDate(), parsedDivorceDate);
+    return parsedDivorceDate;
   }
 
   /**
@@ -16,6 +16,7 @@
  */
 package ch.thn.gedcom.creator.structures;
 
+import ch.thn.gedcom.creator.GedcomStoreContext;
 import ch.thn.gedcom.data.GedcomTree;
 import ch.thn.gedcom.store.GedcomStore;
 
@@ -32,6 +33,15 @@ public class GedcomHeader extends AbstractGedcomStructure {
 	 * @param store
 	 */
 	public GedcomHeader(GedcomStore store) {
+		this(new GedcomStoreContext(store));
+	}
+	
+	/**
+	 * A new {@link AbstractGedcomStructure#HEADER} with the given ID
+	 * 
+	 * @param store The wrapped store, see {@link GedcomStoreContext}
+	 */
+	public GedcomHeader(GedcomStoreContext store) {
 		super(store, HEADER, "HEAD");
 				
 	}
@@ -44,6 +54,17 @@ public class GedcomHeader extends AbstractGedcomStructure {
 	 * @param gedcomHeadNode
 	 */
 	public GedcomHeader(GedcomStore store, GedcomTree gedcomHeadNode) {
+		this(new GedcomStoreContext(store), gedcomHeadNode);
+	}
+	
+	/**
+	 * Creates a new individual using the given gedcom head node ({@link GedcomTree}) 
+	 * which has to be a {@link AbstractGedcomStructure#HEADER} structure.
+	 * 
+	 * @param store
+	 * @param gedcomHeadNode
+	 */
+	public GedcomHeader(GedcomStoreContext store, GedcomTree gedcomHeadNode) {
 		super(store, HEADER, gedcomHeadNode, "HEAD");
 	}
 	
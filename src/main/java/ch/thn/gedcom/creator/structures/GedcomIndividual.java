@@ -24,9 +24,11 @@ import java.util.List;
 
 import ch.thn.gedcom.GedcomFormatter;
 import ch.thn.gedcom.creator.GedcomCreatorError;
+import ch.thn.gedcom.creator.GedcomDate;
 import ch.thn.gedcom.creator.GedcomEnums.NameType;
 import ch.thn.gedcom.creator.GedcomEnums.Sex;
 import ch.thn.gedcom.creator.GedcomEnums.YesNo;
+import ch.thn.gedcom.creator.GedcomStoreContext;
 import ch.thn.gedcom.data.GedcomAccessError;
 import ch.thn.gedcom.data.GedcomNode;
 import ch.thn.gedcom.data.GedcomTree;
@@ -39,6 +41,25 @@ import ch.thn.stringutil.StringUtil;
  */
 public class GedcomIndividual extends AbstractGedcomStructure {
 
+  //The paths of the frequently used getters. They are kept as constants so that
+  //no path array has to be created for each call and so that they can be used as
+  //keys for the resolved node cache. The arrays must not be modified.
+  private static final String[] SEX_PATH = {"SEX"};
+  private static final String[] BIRTH_PATH = {"INDIVIDUAL_EVENT_STRUCTURE;BIRT", "BIRT"};
+  private static final String[] BIRTH_DATE_PATH = {"INDIVIDUAL_EVENT_STRUCTURE;BIRT", "BIRT",
+      "INDIVIDUAL_EVENT_DETAIL", "EVENT_DETAIL", "DATE"};
+  private static final String[] BIRTH_DATE_PATH_V55 = {"INDIVIDUAL_EVENT_STRUCTURE;BIRT", "BIRT",
+      null, "EVENT_DETAIL", "DATE"};
+  private static final String[] DEATH_PATH = {"INDIVIDUAL_EVENT_STRUCTURE;DEAT", "DEAT"};
+  private static final String[] DEATH_DATE_PATH = {"INDIVIDUAL_EVENT_STRUCTURE;DEAT", "DEAT",
+      "INDIVIDUAL_EVENT_DETAIL", "EVENT_DETAIL", "DATE"};
+  private static final String[] DEATH_DATE_PATH_V55 = {"INDIVIDUAL_EVENT_STRUCTURE;DEAT", "DEAT",
+      null, "EVENT_DETAIL", "DATE"};
+
+  /** The parsed dates are immutable, thus they can be cached and read by any thread */
+  private volatile GedcomDate parsedBirthDate = null;
+  private volatile GedcomDate parsedDeathDate = null;
+
   /**
    * A new {@link AbstractGedcomStructure#INDIVIDUAL_RECORD} with the given ID
    *
@@ -46,6 +67,16 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @param id
    */
   public GedcomIndividual(GedcomStore store, String id) {
+    this(new GedcomStoreContext(store), id);
+  }
+
+  /**
+   * A new {@link AbstractGedcomStructure#INDIVIDUAL_RECORD} with the given ID
+   *
+   * @param store The wrapped store, see {@link GedcomStoreContext}
+   * @param id
+   */
+  public GedcomIndividual(GedcomStoreContext store, String id) {
     super(store, INDIVIDUAL_RECORD, "INDI");
 
     if (!setId(id)) {
@@ -62,6 +93,17 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @param gedcomHeadNode
    */
   public GedcomIndividual(GedcomStore store, GedcomTree gedcomHeadNode) {
+    this(new GedcomStoreContext(store), gedcomHeadNode);
+  }
+
+  /**
+   * Creates a new individual using the given gedcom head node ({@link GedcomTree})
+   * which has to be a {@link AbstractGedcomStructure#INDIVIDUAL_RECORD} structure.
+   *
+   * @param store
+   * @param gedcomHeadNode
+   */
+  public GedcomIndividual(GedcomStoreContext store, GedcomTree gedcomHeadNode) {
     super(store, INDIVIDUAL_RECORD, gedcomHeadNode, "INDI");
   }
 
@@ -91,7 +133,7 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public String getId() {
-    return getXRef();
+    return getCachedXRef(BASE_PATH);
   }
 
   /**
@@ -120,15 +162,7 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public Sex getSex() {
-    String sex = getValue("SEX");
-
-    if (Sex.MALE.getValue().equals(sex)) {
-      return Sex.MALE;
-    } else if (Sex.FEMALE.getValue().equals(sex)) {
-      return Sex.FEMALE;
-    } else {
-      return Sex.UNKNOWN;
-    }
+    return Sex.fromValue(getCachedValue(SEX_PATH));
   }
 
   /**
@@ -154,13 +188,7 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public boolean isBorn() {
-    String born = getValue("INDIVIDUAL_EVENT_STRUCTURE;BIRT", "BIRT");
-
-    if (YesNo.YES.getValue().equals(born)) {
-      return true;
-    } else {
-      return false;
-    }
+    return YesNo.fromValue(getCachedValue(BIRTH_PATH)) == YesNo.YES;
   }
 
   /**
@@ -178,8 +206,19 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public String getBirthDate() {
-    return getValue("INDIVIDUAL_EVENT_STRUCTURE;BIRT", "BIRT",
-        !isV55() ? "INDIVIDUAL_EVENT_DETAIL" : null, "EVENT_DETAIL", "DATE");
+    return getCachedValue(isV55() ? BIRTH_DATE_PATH_V55 : BIRTH_DATE_PATH);
+  }
+
+  /**
+   * Returns the parsed birth date. The parsed date is kept and the date is only
+   * parsed again if its value has changed.
+   *
+   * @return The parsed date, or <code>null</code> if there is no birth date
+   */
+  public GedcomDate getParsedBirthDate() {
+    GedcomDate parsed = GedcomDate.parse(getBirthDate(), parsedBirthDate);
+    parsedBirthDate = parsed;
+    return parsed;
   }
 
   /**
@@ -215,13 +254,7 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public boolean isDead() {
-    String born = getValue("INDIVIDUAL_EVENT_STRUCTURE;DEAT", "DEAT");
-
-    if (YesNo.YES.getValue().equals(born)) {
-      return true;
-    } else {
-      return false;
-    }
+    return YesNo.fromValue(getCachedValue(DEATH_PATH)) == YesNo.YES;
   }
 
   /**
@@ -239,8 +272,19 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public String getDeathDate() {
-    return getValue("INDIVIDUAL_EVENT_STRUCTURE;DEAT", "DEAT",
-        !isV55() ? "INDIVIDUAL_EVENT_DETAIL" : null, "EVENT_DETAIL", "DATE");
+    return getCachedValue(isV55() ? DEATH_DATE_PATH_V55 : DEATH_DATE_PATH);
+  }
+
+  /**
+   * Returns the parsed death date. The parsed date is kept and the date is only
+   * parsed again if its value has changed.
+   *
+   * @return The parsed date, or <code>null</code> if there is no death date
+   */
+  public GedcomDate getParsedDeathDate() {
+    GedcomDate parsed = GedcomDate.parse(getDeathDate(), parsedDeathDate);
+    parsedDeathDate = parsed;
+    return parsed;
   }
 
   /**
@@ -481,21 +525,7 @@ public class GedcomIndividual extends AbstractGedcomStructure {
       throw new GedcomAccessError("NAME->TYPE not available in GEDCOM v5.5");
     }
 
-    String type = getValue("PERSONAL_NAME_STRUCTURE" + GedcomNode.PATH_OPTION_DELIMITER + index, "NAME", "TYPE");
-
-    if (NameType.MAIDEN.getValue().equals(type)) {
-      return NameType.MAIDEN;
-    } else if (NameType.MARRIED.getValue().equals(type)) {
-      return NameType.MARRIED;
-    } else if (NameType.BIRTH.getValue().equals(type)) {
-      return NameType.BIRTH;
-    } else if (NameType.AKA.getValue().equals(type)) {
-      return NameType.AKA;
-    } else if (NameType.IMMIGRANT.getValue().equals(type)) {
-      return NameType.IMMIGRANT;
-    } else {
-      return NameType.UNSPECIFIED;
-    }
+    return NameType.fromValue(getValue("PERSONAL_NAME_STRUCTURE" + GedcomNode.PATH_OPTION_DELIMITER + index, "NAME", "TYPE"));
   }
 
   /**
@@ -1206,13 +1236,20 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public boolean removeSpouseFamilyLink(String familyId) {
-    int count = getNumberOfSpouseFamilyLinks();
-    while (count > 0) {
-      if (StringUtil.equals(getSpouseFamilyLink(--count), familyId)) {
-        return removeSpouseFamilyLink(count);
-      }
-    }
-    return false;
+    int index = indexOfSpouseFamilyLink(familyId);
+    return index >= 0 && removeSpouseFamilyLink(index);
+  }
+
+  /**
+   * Returns the index of the spouse link to the given family among all the 
+   * spouse to family links. Only the FAMS lines of the spouse to family links
+   * of this individual are considered.
+   *
+   * @param familyId
+   * @return The index, or <code>-1</code> if the family is not linked
+   */
+  public int indexOfSpouseFamilyLink(String familyId) {
+    return indexOfLinkXRef(familyId, "SPOUSE_TO_FAMILY_LINK", "FAMS");
   }
 
   /**
@@ -1288,13 +1325,21 @@ public class GedcomIndividual extends AbstractGedcomStructure {
    * @return
    */
   public boolean removeChildFamilyLink(String familyId) {
-    int count = getNumberOfSpouseFamilyLinks();
-    while (count > 0) {
-      if (StringUtil.equals(getChildFamilyLink(--count), familyId)) {
-        return removeChildFamilyLink(count);
-      }
-    }
-    return false;
+    int index = indexOfChildFamilyLink(familyId);
+    return index >= 0 && removeChildFamilyLink(index);
+  }
+
+  /**
+   * Returns the index of the child link to the given family among all the 
+   * child to family links. Only the FAMC lines of the child to family links
+   * of this individual are considered, not the FAMC lines of events (like
+   * BIRT or ADOP).
+   *
+   * @param familyId
+   * @return The index, or <code>-1</code> if the family is not linked
+   */
+  public int indexOfChildFamilyLink(String familyId) {
+    return indexOfLinkXRef(familyId, "CHILD_TO_FAMILY_LINK", "FAMC");
   }
 
   /**
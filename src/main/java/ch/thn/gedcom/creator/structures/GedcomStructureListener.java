@@ -0,0 +1,38 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.structures;
+
+/**
+ * A listener which is notified when lines of a structure are set, added or removed
+ * through the methods of the structure.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface GedcomStructureListener {
+
+  /**
+   *
+   *
+   * @param structure The modified structure
+   * @param lineName The tag or structure name of the modified top level line
+   * (for example PERSONAL_NAME_STRUCTURE), without variation or index options.
+   * <code>null</code> if it is not known which line has been modified.
+   */
+  public void structureModified(AbstractGedcomStructure structure, String lineName);
+
+}
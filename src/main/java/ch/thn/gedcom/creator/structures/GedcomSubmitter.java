@@ -17,6 +17,7 @@
 package ch.thn.gedcom.creator.structures;
 
 import ch.thn.gedcom.creator.GedcomCreatorError;
+import ch.thn.gedcom.creator.GedcomStoreContext;
 import ch.thn.gedcom.data.GedcomTree;
 import ch.thn.gedcom.store.GedcomStore;
 
@@ -35,6 +36,16 @@ public class GedcomSubmitter extends AbstractGedcomStructure {
 	 * @param id
 	 */
 	public GedcomSubmitter(GedcomStore store, String id) {
+		this(new GedcomStoreContext(store), id);
+	}
+	
+	/**
+	 * A new {@link AbstractGedcomStructure#SUBMITTER_RECORD} with the given ID
+	 * 
+	 * @param store The wrapped store, see {@link GedcomStoreContext}
+	 * @param id
+	 */
+	public GedcomSubmitter(GedcomStoreContext store, String id) {
 		super(store, SUBMITTER_RECORD, "SUBM");
 		
 		if (!setId(id)) {
@@ -52,6 +63,17 @@ public class GedcomSubmitter extends AbstractGedcomStructure {
 	 * @param gedcomHeadNode
 	 */
 	public GedcomSubmitter(GedcomStore store, GedcomTree gedcomHeadNode) {
+		this(new GedcomStoreContext(store), gedcomHeadNode);
+	}
+	
+	/**
+	 * Creates a new individual using the given gedcom head node ({@link GedcomTree}) 
+	 * which has to be a {@link AbstractGedcomStructure#SUBMITTER_RECORD} structure.
+	 * 
+	 * @param store
+	 * @param gedcomHeadNode
+	 */
+	public GedcomSubmitter(GedcomStoreContext store, GedcomTree gedcomHeadNode) {
 		super(store, SUBMITTER_RECORD, gedcomHeadNode, "SUBM");
 	}
 	
@@ -0,0 +1,39 @@
+/**
+ *    Copyright 2014 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.thn.gedcom.creator.structures;
+
+/**
+ * Maps the XRefs of the lines of a structure to new XRefs, for example
+ * when structures are renumbered or merged into another storage.
+ * See {@link AbstractGedcomStructure#remapXRefs(GedcomXRefMapper)}.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public interface GedcomXRefMapper {
+
+  /**
+   *
+   *
+   * @param tag The tag of the line with the XRef (for example INDI for the
+   * ID of an individual, or FAMS for a spouse to family link)
+   * @param xref The current XRef
+   * @return The new XRef, or <code>null</code> if the XRef should not be changed
+   */
+  public String map(String tag, String xref);
+
+}
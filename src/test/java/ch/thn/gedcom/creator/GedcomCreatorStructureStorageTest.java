@@ -0,0 +1,252 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.addFamily;
+import static ch.thn.gedcom.creator.GedcomTestStructures.addIndividual;
+import static ch.thn.gedcom.creator.GedcomTestStructures.family;
+import static ch.thn.gedcom.creator.GedcomTestStructures.getStore;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomHeader;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomCreatorStructureStorageTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void renumberSkipsDanglingXRefs() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "X10", "X20");
+		addIndividual(storage, "X11", "X20");
+		//I1 is linked, but is not in the storage
+		addFamily(storage, "X20", "X10", "X11", "I1");
+
+		storage.renumber(GedcomIdScheme.COMPACT);
+
+		assertFalse(storage.hasIndividual("I1"));
+		assertTrue(storage.hasIndividual("I2"));
+		assertTrue(storage.hasIndividual("I3"));
+		assertTrue(storage.hasFamily("F1"));
+
+		GedcomFamily renumbered = storage.getFamily("F1");
+		assertEquals("I2", renumbered.getHusbandLink());
+		assertEquals("I3", renumbered.getWifeLink());
+		//The dangling link still points to the missing individual
+		assertEquals("I1", renumbered.getChildLink(0));
+		assertEquals(1, renumbered.getNumberOfChildren());
+	}
+
+	@Test
+	public void renumberReusesReplacedIds() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I2").addChildFamilyLink("F1");
+		addFamily(storage, "F1", null, null, "I2");
+
+		storage.renumber(GedcomIdScheme.COMPACT);
+
+		//The current IDs are replaced and can be used again
+		assertTrue(storage.hasIndividual("I1"));
+		assertFalse(storage.hasIndividual("I2"));
+		assertTrue(storage.hasFamily("F1"));
+		assertNotNull(storage.getFamily("F1"));
+		assertEquals("I1", storage.getFamily("F1").getChildLink(0));
+	}
+
+	@Test
+	public void addFamilyChecksParentsAfterAddAll() {
+		GedcomCreatorStructureStorage source = new GedcomCreatorStructureStorage();
+		addIndividual(source, "I1", "F1");
+		addIndividual(source, "I2", "F1");
+		addFamily(source, "F1", "I1", "I2");
+
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		storage.addAll(source);
+
+		//The couple already has a family
+		assertFalse(storage.addFamily(family("F2", "I1", "I2")));
+		assertTrue(storage.addFamily(family("F3", "I1", "I3")));
+	}
+
+	@Test
+	public void addFamilyChecksParentsAfterRenumber() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "X1", "X9");
+		addIndividual(storage, "X2", "X9");
+		addFamily(storage, "X9", "X1", "X2");
+
+		storage.renumber(GedcomIdScheme.COMPACT);
+
+		//The couple is listed by the new IDs
+		assertFalse(storage.addFamily(family("F2", "I1", "I2")));
+		assertTrue(storage.addFamily(family("F3", "X1", "X2")));
+	}
+
+	@Test
+	public void mergeRenamesCollidingIds() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1");
+		addIndividual(storage, "I2", "F1");
+		addFamily(storage, "F1", "I1", "I2");
+
+		GedcomCreatorStructureStorage merged = new GedcomCreatorStructureStorage();
+		addIndividual(merged, "I1", "F1");
+		addIndividual(merged, "I2", "F1");
+		addFamily(merged, "F1", "I1", "I2");
+
+		GedcomXRefRemapping remapping = storage.merge(merged);
+
+		assertEquals("I3", remapping.getIndividualId("I1"));
+		assertEquals("I4", remapping.getIndividualId("I2"));
+		assertEquals("F2", remapping.getFamilyId("F1"));
+		assertTrue(merged.getIndividualIDs().isEmpty());
+		assertTrue(merged.getFamilyIDs().isEmpty());
+
+		//The XRefs of the merged structures are rewritten
+		GedcomFamily family = storage.getFamily("F2");
+		assertEquals("I3", family.getHusbandLink());
+		assertEquals("I4", family.getWifeLink());
+		assertEquals(0, storage.getIndividual("I3").indexOfSpouseFamilyLink("F2"));
+		assertEquals(-1, storage.getIndividual("I3").indexOfSpouseFamilyLink("F1"));
+
+		//The structures of this storage are not changed
+		assertEquals("I1", storage.getFamily("F1").getHusbandLink());
+		assertEquals(0, storage.getIndividual("I1").indexOfSpouseFamilyLink("F1"));
+
+		//The merged couple is listed with its family
+		assertFalse(storage.addFamily(family("F5", "I3", "I4")));
+	}
+
+	@Test
+	public void mergeSkipsDanglingXRefs() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1");
+
+		//I2 is linked, but is in neither storage
+		GedcomCreatorStructureStorage merged = new GedcomCreatorStructureStorage();
+		addIndividual(merged, "I1", "F1");
+		addFamily(merged, "F1", "I1", null, "I2");
+
+		GedcomXRefRemapping remapping = storage.merge(merged);
+
+		//I2 is not used for the renamed individual
+		assertEquals("I3", remapping.getIndividualId("I1"));
+		assertEquals("F1", remapping.getFamilyId("F1"));
+
+		GedcomFamily family = storage.getFamily("F1");
+		assertEquals("I3", family.getHusbandLink());
+		assertEquals("I2", family.getChildLink(0));
+		assertFalse(storage.hasIndividual("I2"));
+	}
+
+	@Test
+	public void mergeMovesHeaders() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		storage.addHeader("H1", new GedcomHeader(getStore()));
+
+		GedcomCreatorStructureStorage merged = new GedcomCreatorStructureStorage();
+		merged.addHeader("H2", new GedcomHeader(getStore()));
+		addIndividual(merged, "I1");
+
+		storage.merge(merged);
+
+		assertTrue(storage.getHeaderIDs().contains("H1"));
+		assertTrue(storage.getHeaderIDs().contains("H2"));
+		assertTrue(merged.getHeaderIDs().isEmpty());
+	}
+
+	@Test
+	public void mergeRefusesHeaderWithSameId() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		GedcomHeader header = new GedcomHeader(getStore());
+		storage.addHeader("H1", header);
+
+		GedcomCreatorStructureStorage merged = new GedcomCreatorStructureStorage();
+		merged.addHeader("H1", new GedcomHeader(getStore()));
+		addIndividual(merged, "I1");
+
+		try {
+			storage.merge(merged);
+			fail("The header H1 has been merged");
+		} catch (GedcomCreatorError e) {
+			//Nothing is merged
+		}
+
+		assertEquals(header, storage.getHeader("H1"));
+		assertFalse(storage.hasIndividual("I1"));
+		assertTrue(merged.hasIndividual("I1"));
+		assertTrue(merged.getHeaderIDs().contains("H1"));
+	}
+
+	@Test
+	public void linkSpouseReplacesPreviousSpouse() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		GedcomIndividual husband = addIndividual(storage, "I1");
+		GedcomIndividual other = addIndividual(storage, "I2");
+		GedcomFamily family = addFamily(storage, "F1", null, null);
+		//The links below update the relations without rebuilding them
+		storage.buildFamilyRelations();
+
+		assertTrue(storage.linkSpouse("F1", "I1", true));
+		assertTrue(storage.linkSpouse("F1", "I2", true));
+
+		assertEquals("I2", family.getHusbandLink());
+		assertEquals(-1, husband.indexOfSpouseFamilyLink("F1"));
+		assertEquals(0, other.indexOfSpouseFamilyLink("F1"));
+		assertTrue(storage.getFamiliesOfParent("I1").isEmpty());
+		assertTrue(storage.getFamiliesOfParent("I2").contains(family));
+	}
+
+	@Test
+	public void unlinkSpouseKeepsSingleParentFamily() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1");
+		addIndividual(storage, "I2");
+		GedcomFamily family = addFamily(storage, "F1", null, null);
+		//The links below update the relations without rebuilding them
+		storage.buildFamilyRelations();
+
+		assertTrue(storage.linkSpouse("F1", "I1", true));
+		assertTrue(storage.linkSpouse("F1", "I2", false));
+		assertFalse(storage.getFamiliesOfParent((String)null).contains(family));
+
+		assertTrue(storage.unlinkSpouse("F1", "I1"));
+		//Listed like buildFamilyRelations() lists a family with a single parent
+		assertTrue(storage.getFamiliesOfParent((String)null).contains(family));
+
+		assertTrue(storage.unlinkSpouse("F1", "I2"));
+		assertFalse(storage.getFamiliesOfParent((String)null).contains(family));
+	}
+
+}
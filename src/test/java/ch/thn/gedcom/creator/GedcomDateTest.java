@@ -0,0 +1,126 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomDate.Qualifier;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GedcomDateTest {
+
+	@Test
+	public void dayNumber() {
+		assertEquals(0, GedcomDate.dayNumber(1970, 1, 1));
+		assertEquals(-1, GedcomDate.dayNumber(1969, 12, 31));
+		assertEquals(11016, GedcomDate.dayNumber(2000, 2, 29));
+		assertEquals(11017, GedcomDate.dayNumber(2000, 3, 1));
+		assertEquals(-719528, GedcomDate.dayNumber(0, 1, 1));
+	}
+
+	@Test
+	public void exactDate() {
+		GedcomDate date = GedcomDate.parse("12 MAR 1900");
+
+		assertEquals(Qualifier.EXACT, date.getQualifier());
+		assertEquals(1900, date.getYear());
+		assertEquals(GedcomDate.dayNumber(1900, 3, 12), date.getEarliestDay());
+		assertEquals(date.getEarliestDay(), date.getLatestDay());
+	}
+
+	@Test
+	public void partialDates() {
+		GedcomDate month = GedcomDate.parse("FEB 1900");
+		assertEquals(GedcomDate.dayNumber(1900, 2, 1), month.getEarliestDay());
+		//1900 is not a leap year
+		assertEquals(GedcomDate.dayNumber(1900, 2, 28), month.getLatestDay());
+
+		GedcomDate year = GedcomDate.parse("ABT 1904");
+		assertTrue(year.isApproximate());
+		assertEquals(GedcomDate.dayNumber(1904, 1, 1), year.getEarliestDay());
+		assertEquals(GedcomDate.dayNumber(1904, 12, 31), year.getLatestDay());
+	}
+
+	@Test
+	public void ranges() {
+		GedcomDate before = GedcomDate.parse("BEF 1900");
+		assertEquals(GedcomDate.UNKNOWN_DAY, before.getEarliestDay());
+		assertEquals(GedcomDate.dayNumber(1900, 12, 31), before.getLatestDay());
+		assertEquals(before.getLatestDay(), before.getSortKey());
+
+		GedcomDate between = GedcomDate.parse("BET 1900 AND MAR 1910");
+		assertEquals(Qualifier.BETWEEN, between.getQualifier());
+		assertEquals(GedcomDate.dayNumber(1900, 1, 1), between.getEarliestDay());
+		assertEquals(GedcomDate.dayNumber(1910, 3, 31), between.getLatestDay());
+
+		GedcomDate from = GedcomDate.parse("FROM 1900");
+		assertEquals(Qualifier.PERIOD, from.getQualifier());
+		assertEquals(GedcomDate.UNKNOWN_DAY, from.getLatestDay());
+
+		assertTrue(between.overlaps(GedcomDate.dayNumber(1905, 1, 1), GedcomDate.dayNumber(1905, 1, 1)));
+		assertFalse(between.overlaps(GedcomDate.dayNumber(1911, 1, 1), GedcomDate.dayNumber(1912, 1, 1)));
+	}
+
+	@Test
+	public void dualYearAndCalendarEscape() {
+		assertEquals(1699, GedcomDate.parse("1699/00").getYear());
+		assertEquals(GedcomDate.dayNumber(1750, 1, 1), 
+				GedcomDate.parse("@#DJULIAN@ 1 JAN 1750").getEarliestDay());
+	}
+
+	@Test
+	public void beforeChrist() {
+		assertEquals(0, GedcomDate.parse("1 B.C.").getYear());
+		assertEquals(-99, GedcomDate.parse("100 BC").getYear());
+		assertFalse(GedcomDate.parse("0 B.C.").isParsed());
+	}
+
+	@Test
+	public void unparseable() {
+		GedcomDate phrase = GedcomDate.parse("(sometime in spring)");
+		assertFalse(phrase.isParsed());
+		assertEquals(GedcomDate.UNKNOWN_YEAR, phrase.getYear());
+		assertEquals(GedcomDate.UNKNOWN_DAY, phrase.getSortKey());
+
+		assertFalse(GedcomDate.parse("31 FEB 1900").isParsed());
+		assertFalse(GedcomDate.parse("BET 1900").isParsed());
+	}
+
+	@Test
+	public void yearOutOfRange() {
+		assertTrue(GedcomDate.parse("9999").isParsed());
+		assertFalse(GedcomDate.parse("10000").isParsed());
+		assertFalse(GedcomDate.parse("999999999").isParsed());
+	}
+
+	@Test
+	public void ordering() {
+		GedcomDate earlier = GedcomDate.parse("1900");
+		GedcomDate later = GedcomDate.parse("12 MAR 1900");
+
+		assertTrue(earlier.compareTo(later) < 0);
+		assertTrue(GedcomDate.parse("unknown").compareTo(earlier) < 0);
+	}
+
+}
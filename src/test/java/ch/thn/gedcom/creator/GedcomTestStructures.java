@@ -0,0 +1,159 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator;
+
+import static org.junit.Assert.assertTrue;
+
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+import ch.thn.gedcom.store.GedcomStore;
+
+/**
+ * The store and the structure factories which are shared by the tests. The 
+ * grammar is parsed once, by the first call to {@link #parseStore()}, which 
+ * has to be called from a <code>@BeforeClass</code> method so that a parse 
+ * error fails the test class instead of causing unrelated errors later.
+ *
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public final class GedcomTestStructures {
+
+	private static GedcomStore store = null;
+
+	/**
+	 *
+	 */
+	private GedcomTestStructures() {
+
+	}
+
+	/**
+	 * Parses the 5.5.1 grammar, if it has not been parsed yet
+	 *
+	 * @return
+	 * @throws GedcomParseException
+	 */
+	public static synchronized GedcomStore parseStore() throws GedcomParseException {
+		if (store == null) {
+			GedcomStore parsed = new GedcomStore();
+			parsed.showParsingOutput(false);
+			parsed.parse(GedcomStore.class.getResource("/gedcomobjects_5.5.1.gedg").getPath());
+			store = parsed;
+		}
+
+		return store;
+	}
+
+	/**
+	 *
+	 *
+	 * @return The parsed store
+	 * @throws IllegalStateException If {@link #parseStore()} has not been called
+	 */
+	public static synchronized GedcomStore getStore() {
+		if (store == null) {
+			throw new IllegalStateException("The store has not been parsed, " + 
+					"call parseStore() from a @BeforeClass method");
+		}
+
+		return store;
+	}
+
+	/**
+	 *
+	 *
+	 * @param id
+	 * @param spouseFamilyIds The families to add FAMS links to
+	 * @return
+	 */
+	public static GedcomIndividual individual(String id, String... spouseFamilyIds) {
+		GedcomIndividual individual = new GedcomIndividual(getStore(), id);
+		for (String familyId : spouseFamilyIds) {
+			individual.addSpouseFamilyLink(familyId);
+		}
+
+		return individual;
+	}
+
+	/**
+	 *
+	 *
+	 * @param id
+	 * @param husbandId The HUSB link, or <code>null</code>
+	 * @param wifeId The WIFE link, or <code>null</code>
+	 * @param childIds
+	 * @return
+	 */
+	public static GedcomFamily family(String id, String husbandId, String wifeId, String... childIds) {
+		GedcomFamily family = new GedcomFamily(getStore(), id);
+		if (husbandId != null) {
+			family.setHusbandLink(husbandId);
+		}
+
+		if (wifeId != null) {
+			family.setWifeLink(wifeId);
+		}
+
+		for (String childId : childIds) {
+			family.addChildLink(childId);
+		}
+
+		return family;
+	}
+
+	/**
+	 * Creates the individual and adds it to the storage. Fails if it can not 
+	 * be added.
+	 *
+	 * @param storage
+	 * @param id
+	 * @param spouseFamilyIds The families to add FAMS links to
+	 * @return
+	 */
+	public static GedcomIndividual addIndividual(GedcomCreatorStructureStorage storage, 
+			String id, String... spouseFamilyIds) {
+		GedcomIndividual individual = individual(id, spouseFamilyIds);
+		assertTrue("The individual " + id + " could not be added", 
+				storage.addIndividual(id, individual));
+
+		return individual;
+	}
+
+	/**
+	 * Creates the family and adds it to the storage, without checking its 
+	 * parents (see {@link GedcomCreatorStructureStorage#addFamily(String, GedcomFamily, boolean)}). 
+	 * Fails if it can not be added.
+	 *
+	 * @param storage
+	 * @param id
+	 * @param husbandId The HUSB link, or <code>null</code>
+	 * @param wifeId The WIFE link, or <code>null</code>
+	 * @param childIds
+	 * @return
+	 */
+	public static GedcomFamily addFamily(GedcomCreatorStructureStorage storage, 
+			String id, String husbandId, String wifeId, String... childIds) {
+		GedcomFamily family = family(id, husbandId, wifeId, childIds);
+		assertTrue("The family " + id + " could not be added", 
+				storage.addFamily(id, family, false));
+
+		return family;
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.addFamily;
+import static ch.thn.gedcom.creator.GedcomTestStructures.addIndividual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class ComponentPartitionerTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void separateTrees() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+
+		//First tree: I1 + I2 with the child I3
+		addIndividual(storage, "I1", "F1");
+		addIndividual(storage, "I2", "F1");
+		addIndividual(storage, "I3").addChildFamilyLink("F1");
+		addFamily(storage, "F1", "I1", "I2", "I3");
+
+		//Second tree: I4 alone with the child I5
+		addIndividual(storage, "I4", "F2");
+		addIndividual(storage, "I5").addChildFamilyLink("F2");
+		addFamily(storage, "F2", "I4", null, "I5");
+
+		//Not linked to anything
+		addIndividual(storage, "I6");
+
+		List<FamilyTreeComponent> components = new ComponentPartitioner(storage).findComponents();
+
+		assertEquals(3, components.size());
+		//Largest first
+		assertEquals(4, components.get(0).size());
+		assertTrue(components.get(0).getIndividualIds().contains("I3"));
+		assertTrue(components.get(0).getFamilyIds().contains("F1"));
+		assertEquals(3, components.get(1).size());
+		assertEquals(1, components.get(2).size());
+	}
+
+	@Test
+	public void partitionKeepsAllFamilies() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+
+		addIndividual(storage, "I1", "F1");
+		addIndividual(storage, "I2", "F1");
+		addFamily(storage, "F1", "I1", "I2");
+
+		//A second family of the same couple, which the parent check would reject
+		addFamily(storage, "F2", "I1", "I2");
+		storage.getIndividual("I1").addSpouseFamilyLink("F2");
+
+		//A family without parents
+		addIndividual(storage, "I3").addChildFamilyLink("F3");
+		addFamily(storage, "F3", null, null, "I3");
+
+		List<GedcomCreatorStructureStorage> partitions = new ComponentPartitioner(storage).partition();
+
+		assertEquals(2, partitions.size());
+		assertEquals(2, partitions.get(0).getFamilyCount());
+		assertTrue(partitions.get(0).hasFamily("F2"));
+		assertEquals(1, partitions.get(1).getFamilyCount());
+		assertTrue(partitions.get(1).hasFamily("F3"));
+	}
+
+}
@@ -0,0 +1,95 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.addFamily;
+import static ch.thn.gedcom.creator.GedcomTestStructures.addIndividual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class GenerationLayeringTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void generations() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+
+		for (String id : new String[] {"I1", "I2", "I3", "I4", "I5"}) {
+			addIndividual(storage, id);
+		}
+
+		addFamily(storage, "F1", "I1", "I2", "I3");
+		addFamily(storage, "F2", "I3", "I4", "I5");
+
+		GenerationLayers layers = new GenerationLayering(storage).compute();
+
+		assertFalse(layers.hasCycles());
+		assertEquals(3, layers.getGenerationCount());
+		assertEquals(0, layers.getGeneration("I1"));
+		assertEquals(0, layers.getGeneration("I4"));
+		assertEquals(1, layers.getGeneration("I3"));
+		assertEquals(2, layers.getGeneration("I5"));
+		assertEquals(Arrays.asList("I5"), layers.getGeneration(2));
+		assertEquals(GenerationLayers.NO_GENERATION, layers.getGeneration("I9"));
+
+		List<String> order = layers.getTopologicalOrder();
+		assertEquals(5, order.size());
+		assertTrue(order.indexOf("I1") < order.indexOf("I3"));
+		assertTrue(order.indexOf("I3") < order.indexOf("I5"));
+	}
+
+	@Test
+	public void cycles() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+
+		for (String id : new String[] {"I1", "I2", "I3"}) {
+			addIndividual(storage, id);
+		}
+
+		//I1 is its own parent, and I3 is a descendant of I1
+		addFamily(storage, "F1", "I1", "I2", "I1");
+		addFamily(storage, "F2", "I1", null, "I3");
+
+		GenerationLayers layers = new GenerationLayering(storage).compute();
+
+		assertTrue(layers.hasCycles());
+		assertEquals(0, layers.getGeneration("I2"));
+		assertEquals(GenerationLayers.NO_GENERATION, layers.getGeneration("I1"));
+		assertEquals(Arrays.asList("I1", "I3"), layers.getUnorderedIndividuals());
+		assertEquals(Arrays.asList("I2"), layers.getTopologicalOrder());
+	}
+
+}
@@ -0,0 +1,182 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.addFamily;
+import static ch.thn.gedcom.creator.GedcomTestStructures.addIndividual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class IntegrityScannerTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void scanFindsMissingLinks() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1").addChildFamilyLink("F9");
+		addFamily(storage, "F1", "I1", "I2", "I3");
+
+		IntegrityScanner scanner = new IntegrityScanner(storage);
+		List<MissingReference> missing = scanner.scan();
+
+		assertEquals(3, missing.size());
+		assertTrue(missing.contains(new MissingReference("I1", "FAMC", "F9")));
+		assertTrue(missing.contains(new MissingReference("F1", "WIFE", "I2")));
+		assertTrue(missing.contains(new MissingReference("F1", "CHIL", "I3")));
+		assertTrue(scanner.hasMissingReferences());
+	}
+
+	@Test
+	public void noMissingLinks() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1");
+		addIndividual(storage, "I2", "F1");
+		addFamily(storage, "F1", "I1", "I2");
+
+		IntegrityScanner scanner = new IntegrityScanner(storage);
+
+		assertTrue(scanner.scan().isEmpty());
+		assertFalse(scanner.hasMissingReferences());
+	}
+
+	@Test
+	public void scanRemovesDuplicateLinks() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1");
+		//The missing child is linked twice
+		GedcomFamily family = addFamily(storage, "F1", "I1", null, "I3");
+		family.addChildLink("I3");
+
+		IntegrityScanner scanner = new IntegrityScanner(storage);
+
+		//Each link is reported by the stream
+		assertEquals(2, scanner.stream(false).count());
+		assertEquals(1, scanner.scan().size());
+	}
+
+	@Test
+	public void scanStopsAtLimit() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1");
+		GedcomFamily family = addFamily(storage, "F1", "I1", null);
+		for (int i = 3; i < 8; i++) {
+			//Each missing child is linked twice
+			family.addChildLink("I" + i);
+			family.addChildLink("I" + i);
+		}
+
+		IntegrityScanner scanner = new IntegrityScanner(storage);
+		List<MissingReference> all = scanner.scan();
+		List<MissingReference> limited = scanner.scan(3);
+
+		assertEquals(5, all.size());
+		assertEquals(3, limited.size());
+		assertEquals(3, new HashSet<>(limited).size());
+		assertTrue(all.containsAll(limited));
+	}
+
+	@Test
+	public void spliteratorSplitsRecords() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		for (int i = 1; i <= 300; i++) {
+			addIndividual(storage, "I" + i, "F" + i);
+		}
+
+		IntegrityScanner scanner = new IntegrityScanner(storage);
+		Spliterator<MissingReference> suffix = scanner.spliterator();
+		Spliterator<MissingReference> prefix = suffix.trySplit();
+		assertNotNull(prefix);
+
+		Set<MissingReference> found = new HashSet<>();
+		int prefixCount = collect(prefix, found);
+		int suffixCount = collect(suffix, found);
+
+		assertEquals(150, prefixCount);
+		assertEquals(150, suffixCount);
+		//Each record is only scanned by one of the two
+		assertEquals(300, found.size());
+		assertEquals(300, scanner.stream(true).count());
+		assertEquals(300, scanner.scan().size());
+	}
+
+	@Test
+	public void smallScanIsNotSplit() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1");
+
+		assertNull(new IntegrityScanner(storage).spliterator().trySplit());
+	}
+
+	@Test
+	public void buildFamilyRelationsFindsMissingWife() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		addIndividual(storage, "I1", "F1");
+		addFamily(storage, "F1", "I1", "I2");
+
+		storage.buildFamilyRelations();
+
+		assertEquals(1, storage.getMissingIndividuals().size());
+		assertTrue(storage.getMissingIndividuals().contains("I2"));
+		assertTrue(storage.getFamiliesOfParent("I1").contains(storage.getFamily("F1")));
+	}
+
+	/**
+	 * Consumes the spliterator
+	 *
+	 * @param spliterator
+	 * @param found The references are added to this set
+	 * @return The number of references
+	 */
+	private static int collect(Spliterator<MissingReference> spliterator, final Set<MissingReference> found) {
+		final int[] count = new int[1];
+		spliterator.forEachRemaining(new Consumer<MissingReference>() {
+			@Override
+			public void accept(MissingReference reference) {
+				found.add(reference);
+				count[0]++;
+			}
+		});
+
+		return count[0];
+	}
+
+}
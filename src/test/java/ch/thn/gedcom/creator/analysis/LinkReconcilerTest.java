@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.analysis;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.addFamily;
+import static ch.thn.gedcom.creator.GedcomTestStructures.addIndividual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomEnums.Sex;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.creator.structures.GedcomFamily;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class LinkReconcilerTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void findAndRepairOneSidedLinks() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+
+		//FAMS without HUSB
+		addIndividual(storage, "I1", "F1").setSex(Sex.MALE);
+		addIndividual(storage, "I2", "F1").setSex(Sex.FEMALE);
+		//CHIL without FAMC
+		GedcomIndividual child = addIndividual(storage, "I3");
+
+		GedcomFamily family = addFamily(storage, "F1", null, "I2", "I3");
+
+		LinkReconciler reconciler = new LinkReconciler(storage);
+
+		ReconciliationReport found = reconciler.findAsymmetries();
+		assertFalse(found.isApplied());
+		assertEquals(2, found.getRepairs().size());
+		assertTrue(found.getRepairs().contains(new LinkRepair("F1", "HUSB", "I1")));
+		assertTrue(found.getRepairs().contains(new LinkRepair("I3", "FAMC", "F1")));
+		assertTrue(found.getConflicts().isEmpty());
+		//Nothing has been changed
+		assertNull(family.getHusbandLink());
+
+		ReconciliationReport repaired = reconciler.reconcile();
+		assertTrue(repaired.isApplied());
+		assertEquals(2, repaired.getRepairs().size());
+		assertEquals("I1", family.getHusbandLink());
+		assertEquals(0, child.indexOfChildFamilyLink("F1"));
+
+		assertTrue(reconciler.findAsymmetries().isConsistent());
+	}
+
+	@Test
+	public void reportSpouseConflicts() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+
+		addIndividual(storage, "I1", "F1").setSex(Sex.MALE);
+		addIndividual(storage, "I2", "F1").setSex(Sex.FEMALE);
+		//Claims to be a spouse of a family which already has both spouses
+		addIndividual(storage, "I4", "F1").setSex(Sex.MALE);
+
+		GedcomFamily family = addFamily(storage, "F1", "I1", "I2");
+
+		ReconciliationReport report = new LinkReconciler(storage).reconcile();
+
+		assertTrue(report.getRepairs().isEmpty());
+		assertEquals(1, report.getConflicts().size());
+		assertEquals(new LinkRepair("F1", "HUSB", "I4"), report.getConflicts().get(0));
+		assertEquals("I1", family.getHusbandLink());
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.index;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.individual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class PhoneticNameIndexTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void findSimilarNames() {
+		PhoneticNameIndex index = new PhoneticNameIndex();
+		GedcomIndividual smith = named("I1", "Smith", "Robert");
+		index.add(smith);
+		GedcomIndividual jones = named("I2", "Jones", "Anna", "Maria");
+		index.add(jones);
+
+		assertEquals(2, index.size());
+		assertTrue(index.getIndividualsBySurname("Smyth").contains(smith));
+		assertFalse(index.getIndividualsBySurname("Smyth").contains(jones));
+		assertTrue(index.getIndividualsByGivenName("Rupert").contains(smith));
+		//Each given name is encoded
+		assertTrue(index.getIndividualsByGivenName("Marie").contains(jones));
+		assertTrue(Arrays.equals(new String[] {"S530"}, index.getSurnameCodes(smith)));
+	}
+
+	@Test
+	public void remove() {
+		PhoneticNameIndex index = new PhoneticNameIndex();
+		GedcomIndividual smith = named("I1", "Smith", "Robert");
+		index.add(smith);
+		index.remove(smith);
+
+		assertEquals(0, index.size());
+		assertTrue(index.getIndividualsBySurname("Smith").isEmpty());
+		assertNull(index.getSurnameCodes(smith));
+
+		//The free slot is reused
+		GedcomIndividual jones = named("I2", "Jones", "Anna");
+		index.add(jones);
+		assertEquals(1, index.size());
+		assertTrue(index.getIndividualsBySurname("Jones").contains(jones));
+		assertTrue(index.getIndividualsBySurname("Smith").isEmpty());
+	}
+
+	@Test
+	public void addNameReencodesIndexedIndividual() {
+		PhoneticNameIndex index = new PhoneticNameIndex();
+		GedcomIndividual smith = named("I1", "Smith", "Robert");
+		index.add(smith);
+
+		smith.addName("Tymczak", "Robert");
+
+		assertTrue(index.getIndividualsBySurname("Tymczak").contains(smith));
+		assertEquals(2, index.getSurnameCodes(smith).length);
+
+		//Not listening anymore after the removal
+		index.remove(smith);
+		smith.addName("Pfister", "Robert");
+		assertTrue(index.getIndividualsBySurname("Pfister").isEmpty());
+	}
+
+	@Test
+	public void addAllReplacesIndividual() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		PhoneticNameIndex index = new PhoneticNameIndex();
+		storage.addIndex(index);
+		GedcomIndividual smith = named("I1", "Smith", "Robert");
+		storage.addIndividual(smith);
+
+		GedcomCreatorStructureStorage other = new GedcomCreatorStructureStorage();
+		GedcomIndividual replacement = named("I1", "Jones", "Anna");
+		other.addIndividual(replacement);
+
+		storage.addAll(other);
+
+		assertEquals(1, index.size());
+		assertNull(index.getSurnameCodes(smith));
+		assertTrue(index.getIndividualsBySurname("Smith").isEmpty());
+		assertTrue(index.getIndividualsBySurname("Jones").contains(replacement));
+	}
+
+	@Test
+	public void addAllInParallel() {
+		PhoneticNameIndex index = new PhoneticNameIndex();
+		List<GedcomIndividual> individuals = new ArrayList<>();
+		for (int i = 0; i < 600; i++) {
+			individuals.add(named("I" + i, i % 2 == 0 ? "Smith" : "Jones", "Robert"));
+		}
+
+		index.addAll(individuals);
+
+		assertEquals(600, index.size());
+		assertEquals(300, index.getIndividualsBySurname("Smyth").size());
+		assertEquals(600, index.getIndividualsByGivenName("Robert").size());
+	}
+
+	/**
+	 * Creates an individual with one name
+	 *
+	 * @param id
+	 * @param surname
+	 * @param givenNames
+	 * @return The individual
+	 */
+	private static GedcomIndividual named(String id, String surname, String... givenNames) {
+		GedcomIndividual individual = individual(id);
+		individual.addName(surname, givenNames);
+		return individual;
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.index;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.individual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.creator.index.ResidenceIndex.Field;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class ResidenceIndexTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void indexByCityAndCountry() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		ResidenceIndex cities = new ResidenceIndex(Field.CITY);
+		ResidenceIndex countries = new ResidenceIndex(Field.COUNTRY);
+		storage.addIndex(cities);
+		storage.addIndex(countries);
+
+		GedcomIndividual i1 = resident("I1", "Zurich", "Switzerland");
+		//Each address is indexed
+		i1.addAddress(null, null, "Bern", null, "Switzerland", null, null, null, null);
+		storage.addIndividual(i1);
+		GedcomIndividual i2 = resident("I2", "Basel", "Switzerland");
+		storage.addIndividual(i2);
+
+		assertTrue(cities.getIndividuals("zurich").contains(i1));
+		assertTrue(cities.getIndividuals("Bern").contains(i1));
+		assertEquals(1, cities.getIndividuals("Basel").size());
+		assertEquals(2, countries.getIndividuals("Switzerland").size());
+
+		storage.removeIndividual("I1");
+
+		assertTrue(cities.getIndividuals("Zurich").isEmpty());
+		assertEquals(1, countries.getIndividuals("Switzerland").size());
+	}
+
+	@Test
+	public void addAllReplacesIndividual() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		ResidenceIndex cities = new ResidenceIndex(Field.CITY);
+		storage.addIndex(cities);
+		storage.addIndividual(resident("I1", "Zurich", "Switzerland"));
+
+		GedcomCreatorStructureStorage other = new GedcomCreatorStructureStorage();
+		GedcomIndividual replacement = resident("I1", "Vienna", "Austria");
+		other.addIndividual(replacement);
+
+		storage.addAll(other);
+
+		assertEquals(1, cities.size());
+		assertTrue(cities.getIndividuals("Zurich").isEmpty());
+		assertTrue(cities.getIndividuals("Vienna").contains(replacement));
+	}
+
+	/**
+	 * Creates an individual with one address
+	 *
+	 * @param id
+	 * @param city
+	 * @param country
+	 * @return The individual
+	 */
+	private static GedcomIndividual resident(String id, String city, String country) {
+		GedcomIndividual individual = individual(id);
+		individual.addAddress(null, null, city, null, country, null, null, null, null);
+		return individual;
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class SoundexEncoderTest {
+
+	private final SoundexEncoder encoder = new SoundexEncoder();
+
+	@Test
+	public void encode() {
+		assertEquals("R163", encoder.encode("Robert"));
+		assertEquals("R163", encoder.encode("Rupert"));
+		assertEquals("S530", encoder.encode("Smith"));
+		assertEquals("S530", encoder.encode("Smyth"));
+		assertEquals("J250", encoder.encode("Jackson"));
+	}
+
+	@Test
+	public void encodeSeparators() {
+		//Same code on both sides of a vowel
+		assertEquals("T522", encoder.encode("Tymczak"));
+		//Same code as the first letter
+		assertEquals("P236", encoder.encode("Pfister"));
+		//H does not separate codes
+		assertEquals("A261", encoder.encode("Ashcraft"));
+	}
+
+	@Test
+	public void encodeIgnoresCaseAndNonLetters() {
+		assertEquals("R163", encoder.encode("ROBERT"));
+		assertEquals("R163", encoder.encode(" robert "));
+		assertEquals("O165", encoder.encode("O'Brien"));
+	}
+
+	@Test
+	public void encodePadsShortNames() {
+		assertEquals("L000", encoder.encode("Lee"));
+		assertEquals("A000", encoder.encode("A"));
+	}
+
+	@Test
+	public void encodeWithoutLetters() {
+		assertNull(encoder.encode(null));
+		assertNull(encoder.encode(""));
+		assertNull(encoder.encode("123"));
+
+		List<String> codes = new ArrayList<>();
+		encoder.encode("123", codes);
+		assertTrue(codes.isEmpty());
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.index;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.individual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class SurnameIndexTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void addAndRemove() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		SurnameIndex index = new SurnameIndex();
+		storage.addIndex(index);
+
+		GedcomIndividual smith = named("I1", "Smith");
+		storage.addIndividual(smith);
+		GedcomIndividual jones = named("I2", "Jones");
+		storage.addIndividual(jones);
+
+		assertEquals(2, index.size());
+		//The keys are normalized
+		assertTrue(index.getIndividuals(" smith ").contains(smith));
+		assertEquals(1, index.getIndividuals("SMITH").size());
+
+		storage.removeIndividual("I1");
+
+		assertEquals(1, index.size());
+		assertTrue(index.getIndividuals("Smith").isEmpty());
+		assertTrue(index.getIndividuals("Jones").contains(jones));
+	}
+
+	@Test
+	public void addIndexIndexesExistingIndividuals() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		GedcomIndividual smith = named("I1", "Smith");
+		smith.addName("Miller", "Anna");
+		storage.addIndividual(smith);
+
+		SurnameIndex index = new SurnameIndex();
+		storage.addIndex(index);
+
+		//Each name is indexed
+		assertTrue(index.getIndividuals("Smith").contains(smith));
+		assertTrue(index.getIndividuals("Miller").contains(smith));
+		assertEquals(2, index.getKeys().size());
+	}
+
+	@Test
+	public void addAllReplacesIndividual() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		SurnameIndex index = new SurnameIndex();
+		storage.addIndex(index);
+		storage.addIndividual(named("I1", "Smith"));
+
+		GedcomCreatorStructureStorage other = new GedcomCreatorStructureStorage();
+		GedcomIndividual replacement = named("I1", "Jones");
+		other.addIndividual(replacement);
+
+		storage.addAll(other);
+
+		//The replaced individual is not in the index anymore
+		assertEquals(1, index.size());
+		assertTrue(index.getIndividuals("Smith").isEmpty());
+		assertTrue(index.getIndividuals("Jones").contains(replacement));
+	}
+
+	/**
+	 * Creates an individual with one name
+	 *
+	 * @param id
+	 * @param surname
+	 * @return The individual
+	 */
+	private static GedcomIndividual named(String id, String surname) {
+		GedcomIndividual individual = individual(id);
+		individual.addName(surname, "John");
+		return individual;
+	}
+
+}
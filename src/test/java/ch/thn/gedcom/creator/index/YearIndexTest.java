@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2013 Thomas Naeff (github.com/thnaeff)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.thn.gedcom.creator.index;
+
+import static ch.thn.gedcom.creator.GedcomTestStructures.individual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.thn.gedcom.creator.GedcomCreatorStructureStorage;
+import ch.thn.gedcom.creator.GedcomTestStructures;
+import ch.thn.gedcom.creator.index.YearIndex.Event;
+import ch.thn.gedcom.creator.structures.GedcomIndividual;
+import ch.thn.gedcom.store.GedcomParseException;
+
+/**
+ * @author Thomas Naeff (github.com/thnaeff)
+ *
+ */
+public class YearIndexTest {
+
+	@BeforeClass
+	public static void parseStore() throws GedcomParseException {
+		GedcomTestStructures.parseStore();
+	}
+
+	@Test
+	public void yearRange() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		YearIndex index = new YearIndex(Event.BIRTH);
+		storage.addIndex(index);
+
+		GedcomIndividual i1 = born("I1", "1900");
+		storage.addIndividual(i1);
+		GedcomIndividual i2 = born("I2", "ABT 1905");
+		storage.addIndividual(i2);
+		GedcomIndividual i3 = born("I3", "12 MAR 1910");
+		storage.addIndividual(i3);
+		//Not indexed by any year
+		storage.addIndividual(individual("I4"));
+
+		assertEquals(3, index.getKeys().size());
+		assertTrue(index.getIndividuals(1910).contains(i3));
+
+		Set<GedcomIndividual> range = index.getIndividuals(1900, 1905);
+		assertEquals(2, range.size());
+		assertTrue(range.contains(i1));
+		assertTrue(range.contains(i2));
+
+		range = index.getIndividuals(1905, Integer.MAX_VALUE);
+		assertEquals(2, range.size());
+		assertTrue(range.contains(i2));
+		assertTrue(range.contains(i3));
+
+		assertTrue(index.getIndividuals(1906, 1909).isEmpty());
+		assertTrue(index.getIndividuals(1910, 1900).isEmpty());
+	}
+
+	@Test
+	public void removeAndReplace() {
+		GedcomCreatorStructureStorage storage = new GedcomCreatorStructureStorage();
+		YearIndex index = new YearIndex(Event.BIRTH);
+		storage.addIndex(index);
+		storage.addIndividual(born("I1", "1900"));
+		storage.addIndividual(born("I2", "1920"));
+
+		GedcomCreatorStructureStorage other = new GedcomCreatorStructureStorage();
+		GedcomIndividual replacement = born("I1", "1950");
+		other.addIndividual(replacement);
+
+		storage.addAll(other);
+
+		assertTrue(index.getIndividuals(1900).isEmpty());
+		assertTrue(index.getIndividuals(1950).contains(replacement));
+
+		storage.removeIndividual("I2");
+
+		assertEquals(1, index.size());
+		assertEquals(1, index.getIndividuals(1900, 2000).size());
+	}
+
+	/**
+	 * Creates an individual with a birth event
+	 *
+	 * @param id
+	 * @param date
+	 * @return The individual
+	 */
+	private static GedcomIndividual born(String id, String date) {
+		GedcomIndividual individual = individual(id);
+		individual.setBirth(true, date);
+		return individual;
+	}
+
+}